@@ -0,0 +1,200 @@
+package suncertify.db;
+
+import suncertify.db.filter.SearchType;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+public class AsyncDB
+{
+  private static final Logger log = Logger.getLogger(AsyncDB.class.getName());
+
+  private static final int DEFAULT_IO_THREADS = 2;
+
+  private final FileData fileData;
+  private final ExecutorService ioExecutor;
+
+  public AsyncDB(FileData fileData)
+  {
+    this(fileData, DEFAULT_IO_THREADS);
+  }
+
+  public AsyncDB(FileData fileData, int ioThreads)
+  {
+    this.fileData = fileData;
+    this.ioExecutor = Executors.newFixedThreadPool(ioThreads, new ThreadFactory()
+    {
+      private final AtomicInteger created = new AtomicInteger();
+
+      public Thread newThread(Runnable runnable)
+      {
+        Thread thread = new Thread(runnable, "db-io-" + created.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  public CompletableFuture<String[]> read(final int recordNumber)
+  {
+    return submit(new Callable<String[]>()
+    {
+      public String[] call() throws Exception
+      {
+        return fileData.read(recordNumber);
+      }
+    });
+  }
+
+  public CompletableFuture<int[]> find(String[] criteria)
+  {
+    return find(criteria, SearchType.OR);
+  }
+
+  public CompletableFuture<int[]> find(final String[] criteria, final SearchType type)
+  {
+    return submit(new Callable<int[]>()
+    {
+      public int[] call() throws Exception
+      {
+        return fileData.find(criteria, type);
+      }
+    });
+  }
+
+  public CompletableFuture<Void> update(final int recordNumber, final String[] data, final long lockCookie)
+  {
+    return submit(new Callable<Void>()
+    {
+      public Void call() throws Exception
+      {
+        fileData.update(recordNumber, data, lockCookie);
+        return null;
+      }
+    });
+  }
+
+  public CompletableFuture<Void> delete(final int recordNumber, final long lockCookie)
+  {
+    return submit(new Callable<Void>()
+    {
+      public Void call() throws Exception
+      {
+        fileData.delete(recordNumber, lockCookie);
+        return null;
+      }
+    });
+  }
+
+  public CompletableFuture<Integer> create(final String[] data)
+  {
+    return submit(new Callable<Integer>()
+    {
+      public Integer call() throws Exception
+      {
+        return fileData.create(data);
+      }
+    });
+  }
+
+  public CompletableFuture<Long> lock(final int recordNumber)
+  {
+    final CompletableFuture<Long> granted;
+    try
+    {
+      granted = fileData.lockAsync(recordNumber);
+    } catch (RecordNotFoundException e)
+    {
+      return failed(e);
+    }
+
+    // the lock table completes on the unlocking thread, so move the caller's continuations onto the executor
+    final CompletableFuture<Long> result = new CompletableFuture<Long>();
+    granted.whenCompleteAsync(new BiConsumer<Long, Throwable>()
+    {
+      public void accept(Long cookie, Throwable failure)
+      {
+        if (failure != null)
+          result.completeExceptionally(failure);
+        else if (!result.complete(cookie))
+          unlockQuietly(recordNumber, cookie);   // the caller gave up just as the lock was handed over
+      }
+    }, ioExecutor);
+
+    result.whenComplete(new BiConsumer<Long, Throwable>()
+    {
+      public void accept(Long cookie, Throwable failure)
+      {
+        if (result.isCancelled())
+          granted.cancel(false);
+      }
+    });
+
+    return result;
+  }
+
+  public CompletableFuture<Void> unlock(final int recordNumber, final long cookie)
+  {
+    return submit(new Callable<Void>()
+    {
+      public Void call() throws Exception
+      {
+        fileData.unlock(recordNumber, cookie);
+        return null;
+      }
+    });
+  }
+
+  public void close()
+  {
+    ioExecutor.shutdown();
+  }
+
+  private void unlockQuietly(int recordNumber, long cookie)
+  {
+    try
+    {
+      fileData.unlock(recordNumber, cookie);
+    } catch (Exception e)
+    {
+      log.warning("Cannot release abandoned lock on " + recordNumber + ": " + e.getMessage());
+    }
+  }
+
+  private <T> CompletableFuture<T> submit(final Callable<T> operation)
+  {
+    final CompletableFuture<T> result = new CompletableFuture<T>();
+    ioExecutor.execute(new Runnable()
+    {
+      public void run()
+      {
+        if (result.isDone())
+          return;
+
+        try
+        {
+          result.complete(operation.call());
+        } catch (Exception e)
+        {
+          result.completeExceptionally(e);
+        }
+      }
+    });
+
+    return result;
+  }
+
+  private <T> CompletableFuture<T> failed(Exception e)
+  {
+    CompletableFuture<T> result = new CompletableFuture<T>();
+    result.completeExceptionally(e);
+
+    return result;
+  }
+}
@@ -0,0 +1,9 @@
+package suncertify.db;
+
+public class DeadlockException extends DatabaseException
+{
+  public DeadlockException(String message)
+  {
+    super(message, null);
+  }
+}
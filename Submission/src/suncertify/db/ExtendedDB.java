@@ -1,8 +1,230 @@
 package suncertify.db;
 
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.filter.Range;
 import suncertify.db.filter.SearchType;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 public interface ExtendedDB
 {
   int[] find(String[] criteria, SearchType type);
+
+  /**
+   * Returns the record numbers matching the criteria whose typed columns
+   * also fall inside every range, such as a rate in cents or a date in days.
+   * A record whose value cannot be parsed is never inside a range.
+   *
+   * @param criteria search criteria, as for find
+   * @param type     whether a record must match all or any of the criteria
+   * @param ranges   inclusive ranges the record must fall inside, all of them
+   * @return matching record numbers
+   * @throws IllegalArgumentException if a range is on a column that is not typed
+   */
+  int[] find(String[] criteria, SearchType type, Range[] ranges);
+
+  /**
+   * Returns the record with exactly the same name, location and date as the
+   * given data, without searching. No two live records share this key.
+   *
+   * @param data record data, only the key fields are used
+   * @return recordNumber
+   * @throws RecordNotFoundException if no record has the key
+   */
+  int findKey(String[] data) throws RecordNotFoundException;
+
+  /**
+   * Returns the records matching the criteria, read together from one
+   * consistent view of the database, in record order.
+   *
+   * @param criteria search criteria, as for find
+   * @param type     whether a record must match all or any of the criteria
+   * @return matching records with their data
+   */
+  List<DatabaseRow> findRecords(String[] criteria, SearchType type);
+
+  /**
+   * Returns one page of the records matching the criteria, in record order.
+   * The search stops as soon as the page is full.
+   *
+   * @param criteria search criteria, as for find
+   * @param type     whether a record must match all or any of the criteria
+   * @param offset   number of matching records to skip
+   * @param limit    most records to return
+   * @return matching records with their data
+   */
+  List<DatabaseRow> findRecords(String[] criteria, SearchType type, int offset, int limit);
+
+  /**
+   * Returns the records matching the criteria whose typed columns also fall
+   * inside every range, in record order.
+   *
+   * @param criteria search criteria, as for find
+   * @param type     whether a record must match all or any of the criteria
+   * @param ranges   inclusive ranges the record must fall inside, all of them
+   * @return matching records with their data
+   * @throws IllegalArgumentException if a range is on a column that is not typed
+   */
+  List<DatabaseRow> findRecords(String[] criteria, SearchType type, Range[] ranges);
+
+  /**
+   * Returns one page of the records matching the criteria, ordered by the
+   * value of a column ignoring case, then by record number.
+   *
+   * @param criteria   search criteria, as for find
+   * @param type       whether a record must match all or any of the criteria
+   * @param sortColumn column to order by
+   * @param offset     number of matching records to skip
+   * @param limit      most records to return
+   * @return matching records with their data
+   */
+  List<DatabaseRow> findRecords(String[] criteria, SearchType type, int sortColumn, int offset, int limit);
+
+  /**
+   * Locks a record on behalf of a client, for callers whose threads serve
+   * more than one client. Deadlocks are looked for between clients rather
+   * than threads, so an equal client must be passed for every lock it
+   * takes, including through tryLock, the timed lock and lockAll. The
+   * overloads without a client treat the calling thread as the client.
+   *
+   * @param recNo  recordNumber
+   * @param client identity of the client, compared by equals
+   * @return lock cookie
+   * @throws RecordNotFoundException if record does not exist
+   */
+  long lock(int recNo, Object client) throws RecordNotFoundException;
+
+  /**
+   * Locks a record without blocking the caller. The returned future is
+   * completed with the lock cookie when the record is handed over, by the
+   * thread that unlocked it. Cancelling the future gives up the place in the
+   * queue. No thread waits, so it takes no part in deadlock detection.
+   *
+   * @param recNo recordNumber
+   * @return future lock cookie
+   * @throws RecordNotFoundException if record does not exist
+   */
+  CompletableFuture<Long> lockAsync(int recNo) throws RecordNotFoundException;
+
+  /**
+   * Locks a record only if no other client holds it.
+   *
+   * @param recNo recordNumber
+   * @return lock cookie
+   * @throws RecordNotFoundException if record does not exist
+   * @throws LockTimeoutException    if the record is already locked
+   */
+  long tryLock(int recNo) throws RecordNotFoundException, LockTimeoutException;
+
+  /**
+   * Locks a record on behalf of a client only if no other client holds it.
+   *
+   * @param recNo  recordNumber
+   * @param client identity of the client, compared by equals
+   * @return lock cookie
+   * @throws RecordNotFoundException if record does not exist
+   * @throws LockTimeoutException    if the record is already locked
+   */
+  long tryLock(int recNo, Object client) throws RecordNotFoundException, LockTimeoutException;
+
+  /**
+   * Locks a record, waiting at most the given time for another client to
+   * unlock it.
+   *
+   * @param recNo   recordNumber
+   * @param timeout longest time to wait
+   * @param unit    unit of the timeout
+   * @return lock cookie
+   * @throws RecordNotFoundException if record does not exist
+   * @throws LockTimeoutException    if the record was not unlocked in time
+   */
+  long lock(int recNo, long timeout, TimeUnit unit) throws RecordNotFoundException, LockTimeoutException;
+
+  /**
+   * Locks a record on behalf of a client, waiting at most the given time for
+   * another client to unlock it.
+   *
+   * @param recNo   recordNumber
+   * @param timeout longest time to wait
+   * @param unit    unit of the timeout
+   * @param client  identity of the client, compared by equals
+   * @return lock cookie
+   * @throws RecordNotFoundException if record does not exist
+   * @throws LockTimeoutException    if the record was not unlocked in time
+   */
+  long lock(int recNo, long timeout, TimeUnit unit, Object client) throws RecordNotFoundException, LockTimeoutException;
+
+  /**
+   * Locks several records for a group booking. The records are locked in
+   * ascending order so concurrent group bookings cannot deadlock, and if
+   * locking fails part way every record already locked is released.
+   *
+   * @param recNos recordNumbers
+   * @return one lock cookie covering every record
+   * @throws RecordNotFoundException if any record does not exist
+   */
+  long lockAll(int[] recNos) throws RecordNotFoundException;
+
+  /**
+   * Locks several records for a group booking on behalf of a client, as
+   * lockAll(recNos) does.
+   *
+   * @param recNos recordNumbers
+   * @param client identity of the client, compared by equals
+   * @return one lock cookie covering every record
+   * @throws RecordNotFoundException if any record does not exist
+   */
+  long lockAll(int[] recNos, Object client) throws RecordNotFoundException;
+
+  /**
+   * Modifies several records locked together by lockAll. The new value for
+   * field n of recNos[i] appears in data[i][n].
+   *
+   * @param recNos     recordNumbers
+   * @param data       updated data, one row per record
+   * @param lockCookie cookie returned by lockAll
+   * @throws SecurityException       if the records are not all locked with the cookie
+   * @throws RecordNotFoundException if any record does not exist
+   * @throws DuplicateKeyException   if a record would take the key of another record, nothing is written
+   */
+  void updateAll(int[] recNos, String[][] data, long lockCookie)
+          throws RecordNotFoundException, SecurityException, DuplicateKeyException;
+
+  /**
+   * Releases several records locked together by lockAll.
+   *
+   * @param recNos recordNumbers
+   * @param cookie cookie returned by lockAll
+   * @throws SecurityException       if the records are not all locked with the cookie
+   * @throws RecordNotFoundException if any record does not exist
+   */
+  void unlockAll(int[] recNos, long cookie)
+          throws RecordNotFoundException, SecurityException;
+
+  /**
+   * Returns the version of a record, which changes every time the record is
+   * written. Read the version before the data it will be compared against.
+   *
+   * @param recNo recordNumber
+   * @return current version
+   * @throws RecordNotFoundException if record does not exist
+   */
+  long getVersion(int recNo) throws RecordNotFoundException;
+
+  /**
+   * Modifies the fields of a record without locking it, as long as the record
+   * is still at the given version and no client has it locked. Keys are
+   * only checked once the version matches.
+   *
+   * @param recNo           recordNumber
+   * @param expectedVersion version the update was based on
+   * @param data            updated data
+   * @return false if the record has changed or is locked, so nothing was written
+   * @throws RecordNotFoundException if record does not exist
+   * @throws DuplicateKeyException   if the record would take the key of another record
+   */
+  boolean compareAndUpdate(int recNo, long expectedVersion, String[] data)
+          throws RecordNotFoundException, DuplicateKeyException;
 }
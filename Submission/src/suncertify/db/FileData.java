@@ -1,29 +1,83 @@
 package suncertify.db;
 
 import suncertify.db.file.CachedDecorator;
+import suncertify.db.file.IndexedDecorator;
 import suncertify.db.file.LockingDecorator;
+import suncertify.db.file.index.BitmapIndex;
+import suncertify.db.file.index.ColumnIndex;
+import suncertify.db.file.index.PrefixIndex;
+import suncertify.db.file.index.RangeIndex;
+import suncertify.db.file.index.UniqueIndex;
+import suncertify.db.file.lock.LockTable;
 import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.file.reader.FileDatabaseReader;
 import suncertify.db.file.reader.SimpleFileDatabaseReader;
+import suncertify.db.filter.ColumnOrder;
+import suncertify.db.filter.ColumnType;
+import suncertify.db.filter.QueryCache;
+import suncertify.db.filter.Range;
+import suncertify.db.filter.RecordSearch;
 import suncertify.db.filter.RemoveDeletedFilter;
 import suncertify.db.filter.SearchType;
 import suncertify.db.filter.StartsWithFilter;
-import suncertify.lang.CollectionToArray;
 import suncertify.lang.filters.Filters;
+import suncertify.lang.filters.Plan;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class FileData implements DB, ExtendedDB
 {
+  public static final int NAME_COLUMN = 0;
+  public static final int LOCATION_COLUMN = 1;
+  public static final int RATE_COLUMN = 4;
+  public static final int DATE_COLUMN = 5;
+
+  private static final Range[] NO_RANGES = new Range[0];
+
   private LockingDecorator lockingFileDatabase;
+  private IndexedDecorator indexedFileDatabase;
+  private RecordSearch search;
+  private QueryCache queryCache;
   public Filters<DatabaseRow> filtering;
 
   public FileData(File databaseLocation) throws FileNotFoundException
   {
-    lockingFileDatabase = new LockingDecorator(new CachedDecorator(new SimpleFileDatabaseReader(databaseLocation)));
+    this(new SimpleFileDatabaseReader(databaseLocation));
+  }
+
+  public FileData(FileDatabaseReader databaseReader)
+  {
+    this(databaseReader, new LockTable());
+  }
+
+  public FileData(FileDatabaseReader databaseReader, LockTable lockTable)
+  {
+    this(databaseReader, lockTable, new RecordSearch());
+  }
+
+  public FileData(FileDatabaseReader databaseReader, LockTable lockTable, RecordSearch search)
+  {
+    this(databaseReader, lockTable, search, new QueryCache());
+  }
+
+  public FileData(FileDatabaseReader databaseReader, LockTable lockTable, RecordSearch search, QueryCache queryCache)
+  {
+    indexedFileDatabase = new IndexedDecorator(new CachedDecorator(databaseReader),
+            new ColumnIndex[]{new PrefixIndex(), new PrefixIndex(), new BitmapIndex(), new BitmapIndex()},   // name, location, size, smoking
+            new RangeIndex[]{null, null, null, null, new RangeIndex(ColumnType.CENTS), new RangeIndex(ColumnType.EPOCH_DAY)},   // rate, date
+            new UniqueIndex(NAME_COLUMN, LOCATION_COLUMN, DATE_COLUMN));
+    lockingFileDatabase = new LockingDecorator(indexedFileDatabase, lockTable);
     filtering = new Filters<DatabaseRow>(new RemoveDeletedFilter(), new StartsWithFilter());
+    this.search = search;
+    this.queryCache = queryCache;
   }
 
   public String[] read(int recordNumber) throws RecordNotFoundException
@@ -33,7 +87,23 @@ public class FileData implements DB, ExtendedDB
 
   public void update(int recordNumber, String[] data, long lockCookie) throws RecordNotFoundException, SecurityException
   {
-    lockingFileDatabase.update(recordNumber, data, lockCookie);
+    try
+    {
+      lockingFileDatabase.update(recordNumber, data, lockCookie);
+    } catch (DuplicateKeyException e)
+    {
+      throw new DatabaseException("Cannot update record " + recordNumber + ": " + e.getMessage(), e);   // DB.update cannot declare it
+    }
+  }
+
+  public long getVersion(int recordNumber) throws RecordNotFoundException
+  {
+    return lockingFileDatabase.getVersion(recordNumber);
+  }
+
+  public boolean compareAndUpdate(int recordNumber, long expectedVersion, String[] data) throws RecordNotFoundException, DuplicateKeyException
+  {
+    return lockingFileDatabase.compareAndUpdate(recordNumber, expectedVersion, data);
   }
 
   public void delete(int recordNumber, long lockCookie) throws RecordNotFoundException, SecurityException
@@ -48,14 +118,155 @@ public class FileData implements DB, ExtendedDB
 
   public int[] find(String[] criteria, SearchType type)
   {
-    List<Integer> result = new ArrayList<Integer>();
+    long writeVersion = indexedFileDatabase.getWriteVersion();   // read first, so a write during the search makes the entry stale
 
-    List<DatabaseRow> results = filtering.accepts(criteria, lockingFileDatabase.readAll(), type);
+    int[] result = queryCache.get(criteria, type, writeVersion);
+    if (result != null)
+      return result;
 
-    for (DatabaseRow databaseRow : results)
-      result.add(databaseRow.getId());
+    result = search.find(snapshotPlan(criteria, type, NO_RANGES), lockingFileDatabase.readAll());
+    queryCache.put(criteria, type, writeVersion, result);
 
-    return CollectionToArray.convert(result);
+    return result;
+  }
+
+  public int[] find(String[] criteria, SearchType type, Range[] ranges)
+  {
+    if (ranges.length == 0)
+      return find(criteria, type);
+
+    return search.find(snapshotPlan(criteria, type, ranges), lockingFileDatabase.readAll());
+  }
+
+  public int findKey(String[] data) throws RecordNotFoundException
+  {
+    int recordNumber = indexedFileDatabase.findKey(data);
+    if (recordNumber == UniqueIndex.NONE)
+      throw new RecordNotFoundException("No record has the key of: " + Arrays.toString(data));
+
+    return recordNumber;
+  }
+
+  public List<DatabaseRow> findRecords(String[] criteria, SearchType type)
+  {
+    long writeVersion = indexedFileDatabase.getWriteVersion();
+    int[] found = find(criteria, type);
+    List<DatabaseRow> rows = lockingFileDatabase.readAll();
+
+    return copies(search.findRows(foundPlan(criteria, type, writeVersion, found), rows));
+  }
+
+  public List<DatabaseRow> findRecords(String[] criteria, SearchType type, Range[] ranges)
+  {
+    if (ranges.length == 0)
+      return findRecords(criteria, type);
+
+    return copies(search.findRows(snapshotPlan(criteria, type, ranges), lockingFileDatabase.readAll()));
+  }
+
+  public List<DatabaseRow> findRecords(String[] criteria, SearchType type, int offset, int limit)
+  {
+    long writeVersion = indexedFileDatabase.getWriteVersion();
+    int[] found = queryCache.peek(criteria, type, writeVersion);   // a page stops early, so it is never worth finding every match first
+    List<DatabaseRow> rows = lockingFileDatabase.readAll();
+
+    return copies(search.findPage(cachedPlan(criteria, type, writeVersion, found), rows, offset, limit));
+  }
+
+  public List<DatabaseRow> findRecords(String[] criteria, SearchType type, int sortColumn, int offset, int limit)
+  {
+    long writeVersion = indexedFileDatabase.getWriteVersion();
+    int[] found = queryCache.peek(criteria, type, writeVersion);   // nor for a top-k, which only keeps a bounded heap
+    List<DatabaseRow> rows = lockingFileDatabase.readAll();
+
+    return copies(search.findTop(cachedPlan(criteria, type, writeVersion, found), rows,
+            new ColumnOrder(sortColumn), offset, limit));
+  }
+
+  // the rows belong to the cached snapshot, so callers get copies they cannot change it through
+  private static List<DatabaseRow> copies(List<DatabaseRow> rows)
+  {
+    List<DatabaseRow> result = new ArrayList<DatabaseRow>(rows.size());
+    for (DatabaseRow databaseRow : rows)
+      result.add(new DatabaseRow(databaseRow.getId(), !databaseRow.isValid(), databaseRow.getData().clone(), databaseRow.getVersion()));
+
+    return Collections.unmodifiableList(result);
+  }
+
+  private Plan<DatabaseRow> cachedPlan(String[] criteria, SearchType type, long writeVersion, int[] found)
+  {
+    if (found == null)
+      return snapshotPlan(criteria, type, NO_RANGES);
+
+    return foundPlan(criteria, type, writeVersion, found);
+  }
+
+  // found came from find, usually the query cache, so a snapshot row only needs a bit test to be ruled out;
+  // the rows are still re-checked in case a write was under way
+  private Plan<DatabaseRow> foundPlan(String[] criteria, SearchType type, long writeVersion, int[] found)
+  {
+    if (indexedFileDatabase.getWriteVersion() != writeVersion)
+      return snapshotPlan(criteria, type, NO_RANGES);   // written meanwhile, the ids may not cover the snapshot
+
+    final Plan<DatabaseRow> plan = filtering.compile(criteria, type);
+    final BitSet ids = new BitSet();
+    for (int recordNumber : found)
+      ids.set(recordNumber);
+
+    return new Plan<DatabaseRow>()
+    {
+      public boolean accepts(DatabaseRow databaseRow)
+      {
+        return ids.get(databaseRow.getId()) && plan.accepts(databaseRow);
+      }
+
+      public int getCost()
+      {
+        return plan.getCost();
+      }
+    };
+  }
+
+  // rows handed to this plan all come from one readAll, so the index only has to rule rows out,
+  // and a bit test is all it costs to skip a row before any string is compared
+  private Plan<DatabaseRow> snapshotPlan(String[] criteria, SearchType type, Range[] ranges)
+  {
+    final Plan<DatabaseRow> plan = filtering.compile(criteria, type);
+    final BitSet candidates = candidates(criteria, type, ranges);
+    if (candidates == null)
+      return plan;
+
+    return new Plan<DatabaseRow>()
+    {
+      public boolean accepts(DatabaseRow databaseRow)
+      {
+        return candidates.get(databaseRow.getId()) && plan.accepts(databaseRow);
+      }
+
+      public int getCost()
+      {
+        return plan.getCost();
+      }
+    };
+  }
+
+  public QueryCache getQueryCache()
+  {
+    return queryCache;
+  }
+
+  // ranges are only answered by their indexes, so the values are never parsed while searching
+  private BitSet candidates(String[] criteria, SearchType type, Range[] ranges)
+  {
+    BitSet candidates = indexedFileDatabase.findCandidates(criteria, type);
+    BitSet inRanges = indexedFileDatabase.findInRanges(ranges);
+    if (candidates == null)
+      return inRanges;
+
+    if (inRanges != null)
+      candidates.and(inRanges);
+
+    return candidates;
   }
 
   public int create(String[] data) throws DuplicateKeyException
@@ -68,6 +279,56 @@ public class FileData implements DB, ExtendedDB
     return lockingFileDatabase.lock(recordNumber);
   }
 
+  public long lock(int recordNumber, Object client) throws RecordNotFoundException
+  {
+    return lockingFileDatabase.lock(recordNumber, client);
+  }
+
+  public CompletableFuture<Long> lockAsync(int recordNumber) throws RecordNotFoundException
+  {
+    return lockingFileDatabase.lockAsync(recordNumber);
+  }
+
+  public long tryLock(int recordNumber) throws RecordNotFoundException, LockTimeoutException
+  {
+    return lockingFileDatabase.tryLock(recordNumber);
+  }
+
+  public long tryLock(int recordNumber, Object client) throws RecordNotFoundException, LockTimeoutException
+  {
+    return lockingFileDatabase.tryLock(recordNumber, client);
+  }
+
+  public long lock(int recordNumber, long timeout, TimeUnit unit) throws RecordNotFoundException, LockTimeoutException
+  {
+    return lockingFileDatabase.lock(recordNumber, timeout, unit);
+  }
+
+  public long lock(int recordNumber, long timeout, TimeUnit unit, Object client) throws RecordNotFoundException, LockTimeoutException
+  {
+    return lockingFileDatabase.lock(recordNumber, timeout, unit, client);
+  }
+
+  public long lockAll(int[] recordNumbers) throws RecordNotFoundException
+  {
+    return lockingFileDatabase.lockAll(recordNumbers);
+  }
+
+  public long lockAll(int[] recordNumbers, Object client) throws RecordNotFoundException
+  {
+    return lockingFileDatabase.lockAll(recordNumbers, client);
+  }
+
+  public void updateAll(int[] recordNumbers, String[][] data, long lockCookie) throws RecordNotFoundException, SecurityException, DuplicateKeyException
+  {
+    lockingFileDatabase.updateAll(recordNumbers, data, lockCookie);
+  }
+
+  public void unlockAll(int[] recordNumbers, long cookie) throws RecordNotFoundException, SecurityException
+  {
+    lockingFileDatabase.unlockAll(recordNumbers, cookie);
+  }
+
   public void unlock(int recordNumber, long cookie) throws RecordNotFoundException, SecurityException
   {
     lockingFileDatabase.unlock(recordNumber, cookie);
@@ -0,0 +1,14 @@
+package suncertify.db;
+
+public class LockTimeoutException extends Exception
+{
+  public LockTimeoutException()
+  {
+    super();
+  }
+
+  public LockTimeoutException(String message)
+  {
+    super(message);
+  }
+}
@@ -4,14 +4,21 @@ import suncertify.db.RecordNotFoundException;
 import suncertify.db.file.meta.DatabaseRow;
 import suncertify.db.file.reader.FileDatabaseReader;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class CachedDecorator implements FileDatabaseDecorator
 {
+   private static final int NO_POSITION = -1;
+
    private FileDatabaseReader database;
 
-   private final List<DatabaseRow> cache = new ArrayList<DatabaseRow>();
+   private final Lock writeLock = new ReentrantLock();
+   private volatile Snapshot snapshot;   // never modified once published, replaced whole on every write
 
    public CachedDecorator(FileDatabaseReader database)
    {
@@ -21,57 +28,198 @@ public class CachedDecorator implements FileDatabaseDecorator
 
    private void regenerateCache()
    {
-      synchronized (cache)
+      writeLock.lock();
+      try
+      {
+         List<DatabaseRow> all = database.readAll();
+
+         DatabaseRow[] rows = all.toArray(new DatabaseRow[all.size()]);
+         int[] positions = new int[0];
+         BitSet deleted = new BitSet();
+         for (int i = 0; i < rows.length; i++)
+         {
+            positions = withPosition(positions, rows[i].getId(), i);
+            deleted.set(rows[i].getId(), !rows[i].isValid());
+         }
+
+         snapshot = new Snapshot(snapshot == null ? 0 : snapshot.version + 1, rows, positions, deleted);
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   private void store(int recordNumber, boolean deleted, String[] data)
+   {
+      Snapshot current = snapshot;
+      int position = current.positionOf(recordNumber);
+
+      long version = position < 0 ? 0 : current.rows[position].getVersion() + 1;   // keeps counting across reuse
+      DatabaseRow databaseRow = new DatabaseRow(recordNumber, deleted, data, version);
+
+      DatabaseRow[] rows;
+      int[] positions = current.positions;
+      if (position < 0)
+      {
+         rows = Arrays.copyOf(current.rows, current.rows.length + 1);
+         rows[current.rows.length] = databaseRow;
+         positions = withPosition(positions.clone(), recordNumber, current.rows.length);
+      } else
+      {
+         rows = current.rows.clone();
+         rows[position] = databaseRow;
+      }
+
+      BitSet deletedRows = current.deleted;
+      if (deletedRows.get(recordNumber) != deleted)
       {
-         cache.clear();
-         cache.addAll(database.readAll());
+         deletedRows = (BitSet) deletedRows.clone();
+         deletedRows.set(recordNumber, deleted);
       }
+
+      snapshot = new Snapshot(current.version + 1, rows, positions, deletedRows);
+   }
+
+   private int[] withPosition(int[] positions, int recordNumber, int position)
+   {
+      if (recordNumber >= positions.length)
+      {
+         int oldLength = positions.length;
+         positions = Arrays.copyOf(positions, Math.max(recordNumber + 1, oldLength * 2));
+         Arrays.fill(positions, oldLength, positions.length, NO_POSITION);
+      }
+
+      positions[recordNumber] = position;
+      return positions;
+   }
+
+   private String[] normalise(String[] content)
+   {
+      String[] result = new String[content.length];
+      for (int i = 0; i < content.length; i++)
+         result[i] = content[i].trim();   // as it will be read back from disk
+
+      return result;
    }
 
    public String[] read(int recordNumber) throws RecordNotFoundException
    {
-      for (DatabaseRow databaseRow : readAll())
-         if (databaseRow.getId() == recordNumber && databaseRow.isValid())
-            return databaseRow.getData();
+      Snapshot current = snapshot;
+      int position = current.positionOf(recordNumber);
+
+      if (position < 0 || current.deleted.get(recordNumber))
+         throw new RecordNotFoundException("Record does not exist: " + recordNumber);
 
-      throw new RecordNotFoundException("Record does not exist: " + recordNumber);
+      return current.rows[position].getData().clone();   // the snapshot is shared, so callers get their own copy
    }
 
-   public boolean hasRow(int recordNumber, boolean allowDeleted)
+   public long getVersion(int recordNumber) throws RecordNotFoundException
    {
-      for (DatabaseRow databaseRow : readAll())
-         if (databaseRow.getId() == recordNumber)
-            return allowDeleted || databaseRow.isValid();
+      Snapshot current = snapshot;
+      int position = current.positionOf(recordNumber);
+
+      if (position < 0 || current.deleted.get(recordNumber))
+         throw new RecordNotFoundException("Record does not exist: " + recordNumber);
 
-      return false;
+      return current.rows[position].getVersion();
+   }
+
+   public boolean hasRow(int recordNumber, boolean allowDeleted)
+   {
+      Snapshot current = snapshot;
+      return current.positionOf(recordNumber) >= 0 && (allowDeleted || !current.deleted.get(recordNumber));
    }
 
    public List<DatabaseRow> readAll()
    {
-      synchronized (cache)
-      {
-         return new ArrayList<DatabaseRow>(cache);    // prevent concurrent modifications errors elsewhere by returning a new list
-      }
+      return snapshot.view;
+   }
+
+   public long getSnapshotVersion()
+   {
+      return snapshot.version;
    }
 
    public int create(String[] content)
    {
-      int result = database.create(content);
-      regenerateCache();
+      writeLock.lock();
+      try
+      {
+         int result = database.create(content);
+         store(result, false, normalise(content));
 
-      return result;
+         return result;
+      } finally
+      {
+         writeLock.unlock();
+      }
    }
 
    public void update(int recordNumber, String[] content, long lockCookie) throws RecordNotFoundException, SecurityException
    {
-      database.update(recordNumber, content);
-      regenerateCache();
+      writeLock.lock();
+      try
+      {
+         database.update(recordNumber, content);
+         store(recordNumber, false, normalise(content));
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   public void updateAll(int[] recordNumbers, String[][] data, long lockCookie) throws RecordNotFoundException, SecurityException
+   {
+      writeLock.lock();
+      try
+      {
+         for (int recordNumber : recordNumbers)
+            getVersion(recordNumber);   // fails before anything is written if a record has gone
+
+         for (int i = 0; i < recordNumbers.length; i++)
+         {
+            database.update(recordNumbers[i], data[i]);
+            store(recordNumbers[i], false, normalise(data[i]));
+         }
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   public boolean compareAndUpdate(int recordNumber, long expectedVersion, String[] content) throws RecordNotFoundException
+   {
+      writeLock.lock();
+      try
+      {
+         if (getVersion(recordNumber) != expectedVersion)
+            return false;
+
+         database.update(recordNumber, content);
+         store(recordNumber, false, normalise(content));
+
+         return true;
+      } finally
+      {
+         writeLock.unlock();
+      }
    }
 
    public void delete(int recordNumber, long lockCookie) throws RecordNotFoundException, SecurityException
    {
-      database.delete(recordNumber);
-      regenerateCache();
+      writeLock.lock();
+      try
+      {
+         database.delete(recordNumber);
+
+         Snapshot current = snapshot;
+         int position = current.positionOf(recordNumber);
+         String[] data = position < 0 ? new String[0] : current.rows[position].getData();
+         store(recordNumber, true, data);
+      } finally
+      {
+         writeLock.unlock();
+      }
    }
 
    public long lock(int recordNumber) throws RecordNotFoundException
@@ -83,4 +231,29 @@ public class CachedDecorator implements FileDatabaseDecorator
    {
    }
 
+   private static class Snapshot
+   {
+      private final long version;
+      private final DatabaseRow[] rows;
+      private final int[] positions;   // indexed by record number
+      private final BitSet deleted;     // indexed by record number
+      private final List<DatabaseRow> view;
+
+      private Snapshot(long version, DatabaseRow[] rows, int[] positions, BitSet deleted)
+      {
+         this.version = version;
+         this.rows = rows;
+         this.positions = positions;
+         this.deleted = deleted;
+         this.view = Collections.unmodifiableList(Arrays.asList(rows));
+      }
+
+      private int positionOf(int recordNumber)
+      {
+         if (recordNumber < 0 || recordNumber >= positions.length)
+            return NO_POSITION;
+
+         return positions[recordNumber];
+      }
+   }
 }
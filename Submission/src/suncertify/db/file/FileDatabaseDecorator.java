@@ -1,5 +1,6 @@
 package suncertify.db.file;
 
+import suncertify.db.DuplicateKeyException;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.file.meta.DatabaseRow;
 
@@ -12,10 +13,14 @@ public interface FileDatabaseDecorator
   String[] read(int recordNumber)
           throws RecordNotFoundException;
 
-  int create(String[] content);
+  int create(String[] content)
+          throws DuplicateKeyException;
 
   void update(int recordNumber, String[] data, long lockCookie)
-          throws RecordNotFoundException, SecurityException;
+          throws RecordNotFoundException, SecurityException, DuplicateKeyException;
+
+  void updateAll(int[] recordNumbers, String[][] data, long lockCookie)
+          throws RecordNotFoundException, SecurityException, DuplicateKeyException;
 
   void delete(int recordNumber, long lockCookie)
           throws RecordNotFoundException, SecurityException;
@@ -27,4 +32,10 @@ public interface FileDatabaseDecorator
           throws RecordNotFoundException, SecurityException;
 
   boolean hasRow(int recordNumber, boolean allowDeleted);
+
+  long getVersion(int recordNumber)
+          throws RecordNotFoundException;
+
+  boolean compareAndUpdate(int recordNumber, long expectedVersion, String[] data)
+          throws RecordNotFoundException, DuplicateKeyException;
 }
@@ -0,0 +1,311 @@
+package suncertify.db.file;
+
+import suncertify.db.DuplicateKeyException;
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.file.index.ColumnIndex;
+import suncertify.db.file.index.RangeIndex;
+import suncertify.db.file.index.UniqueIndex;
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.filter.Range;
+import suncertify.db.filter.SearchType;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+public class IndexedDecorator implements FileDatabaseDecorator
+{
+   private static final Logger log = Logger.getLogger(IndexedDecorator.class.getName());
+
+   private FileDatabaseDecorator database;
+
+   private final ColumnIndex[] indexes;        // indexed by column, null for columns without an index
+   private final RangeIndex[] rangeIndexes;    // indexed by column, null for columns without an index
+   private final UniqueIndex uniqueIndex;      // null when keys are not enforced
+   private final Lock writeLock = new ReentrantLock();
+   private volatile BitSet deleted = new BitSet();   // never modified once published, replaced on every change
+   private volatile long writeVersion = 0;           // bumped once a write is visible in the rows and the indexes
+
+   public IndexedDecorator(FileDatabaseDecorator database, ColumnIndex... indexes)
+   {
+      this(database, indexes, new RangeIndex[0]);
+   }
+
+   public IndexedDecorator(FileDatabaseDecorator database, ColumnIndex[] indexes, RangeIndex[] rangeIndexes)
+   {
+      this(database, indexes, rangeIndexes, null);
+   }
+
+   public IndexedDecorator(FileDatabaseDecorator database, ColumnIndex[] indexes, RangeIndex[] rangeIndexes, UniqueIndex uniqueIndex)
+   {
+      this.database = database;
+      this.indexes = indexes;
+      this.rangeIndexes = rangeIndexes;
+      this.uniqueIndex = uniqueIndex;
+
+      BitSet deletedRows = new BitSet();
+      int duplicates = 0;
+      for (DatabaseRow databaseRow : database.readAll())
+      {
+         index(databaseRow.getId(), databaseRow.getData());
+         deletedRows.set(databaseRow.getId(), !databaseRow.isValid());
+
+         if (uniqueIndex != null && databaseRow.isValid() && !uniqueIndex.put(databaseRow.getId(), databaseRow.getData()))
+            duplicates++;   // written before keys were enforced, the first record holds the key
+      }
+      deleted = deletedRows;
+
+      if (duplicates > 0)
+         log.warning("Database already holds " + duplicates + " records with duplicate keys");
+   }
+
+   public long getWriteVersion()
+   {
+      return writeVersion;
+   }
+
+   // the live record with the same key as data, or UniqueIndex.NONE
+   public int findKey(String[] data)
+   {
+      return uniqueIndex == null ? UniqueIndex.NONE : uniqueIndex.get(data);
+   }
+
+   // only a change of key can clash, records already sharing a key may still be written
+   private void checkKeys(int[] recordNumbers, String[][] data) throws DuplicateKeyException
+   {
+      if (uniqueIndex == null)
+         return;
+
+      int row = uniqueIndex.clash(recordNumbers, data);
+      if (row != UniqueIndex.NONE)
+         throw new DuplicateKeyException("Update would give record " + recordNumbers[row] + " the key of another record");
+   }
+
+   public boolean isIndexed(int column)
+   {
+      return column >= 0 && column < indexes.length && indexes[column] != null;
+   }
+
+   private BitSet startingWith(int column, String prefix)
+   {
+      return indexes[column].startingWith(prefix);
+   }
+
+   // every live record that could match, or null when a criterion on an unindexed column means scanning every row
+   public BitSet findCandidates(String[] criteria, SearchType type)
+   {
+      BitSet result = combine(criteria, type);
+      if (result != null)
+         result.andNot(deleted);   // deleted rows keep their index entries until the slot is reused
+
+      return result;
+   }
+
+   // every live record inside all of the ranges, or null when there are none
+   public BitSet findInRanges(Range[] ranges)
+   {
+      BitSet result = null;
+
+      for (Range range : ranges)
+      {
+         int column = range.getColumn();
+         if (column < 0 || column >= rangeIndexes.length || rangeIndexes[column] == null)
+            throw new IllegalArgumentException("Column cannot be searched by range: " + column);
+
+         BitSet matches = rangeIndexes[column].between(range.getMin(), range.getMax());
+         if (result == null)
+            result = matches;
+         else
+            result.and(matches);
+      }
+
+      if (result != null)
+         result.andNot(deleted);
+
+      return result;
+   }
+
+   private BitSet combine(String[] criteria, SearchType type)
+   {
+      BitSet result = null;
+
+      for (int column = 0; column < criteria.length; column++)
+      {
+         if (criteria[column] == null)
+            continue;
+
+         if (!isIndexed(column))
+         {
+            if (SearchType.OR.equals(type))
+               return null;
+
+            continue;
+         }
+
+         BitSet matches = startingWith(column, criteria[column]);
+         if (result == null)
+            result = matches;
+         else if (SearchType.AND.equals(type))
+            result.and(matches);
+         else
+            result.or(matches);
+      }
+
+      return result;
+   }
+
+   private void index(int recordNumber, String[] data)
+   {
+      for (int column = 0; column < indexes.length && column < data.length; column++)
+         if (indexes[column] != null)
+            indexes[column].put(recordNumber, data[column].trim());   // as the cache holds it
+
+      for (int column = 0; column < rangeIndexes.length && column < data.length; column++)
+         if (rangeIndexes[column] != null)
+            rangeIndexes[column].put(recordNumber, data[column]);   // parsed once here, never while searching
+   }
+
+   private void markDeleted(int recordNumber, boolean isDeleted)
+   {
+      if (deleted.get(recordNumber) == isDeleted)
+         return;
+
+      BitSet deletedRows = (BitSet) deleted.clone();
+      deletedRows.set(recordNumber, isDeleted);
+      deleted = deletedRows;
+   }
+
+   public int create(String[] content) throws DuplicateKeyException
+   {
+      writeLock.lock();
+      try
+      {
+         int holder = findKey(content);
+         if (holder != UniqueIndex.NONE)
+            throw new DuplicateKeyException("Record " + holder + " already has this key");
+
+         int result = database.create(content);
+         index(result, content);
+         if (uniqueIndex != null)
+            uniqueIndex.put(result, content);
+         markDeleted(result, false);
+         writeVersion++;
+
+         return result;
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   public void update(int recordNumber, String[] data, long lockCookie) throws RecordNotFoundException, SecurityException, DuplicateKeyException
+   {
+      writeLock.lock();
+      try
+      {
+         checkKeys(new int[]{recordNumber}, new String[][]{data});
+
+         database.update(recordNumber, data, lockCookie);
+         index(recordNumber, data);
+         if (uniqueIndex != null)
+            uniqueIndex.put(recordNumber, data);
+         writeVersion++;
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   public void updateAll(int[] recordNumbers, String[][] data, long lockCookie) throws RecordNotFoundException, SecurityException, DuplicateKeyException
+   {
+      writeLock.lock();
+      try
+      {
+         checkKeys(recordNumbers, data);
+
+         database.updateAll(recordNumbers, data, lockCookie);
+         for (int i = 0; i < recordNumbers.length; i++)
+         {
+            index(recordNumbers[i], data[i]);
+            if (uniqueIndex != null)
+               uniqueIndex.put(recordNumbers[i], data[i]);
+         }
+         writeVersion++;
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   public boolean compareAndUpdate(int recordNumber, long expectedVersion, String[] data) throws RecordNotFoundException, DuplicateKeyException
+   {
+      writeLock.lock();
+      try
+      {
+         if (database.getVersion(recordNumber) != expectedVersion)
+            return false;   // a stale writer hears it lost before hearing about keys, every write comes through here so it cannot change now
+
+         checkKeys(new int[]{recordNumber}, new String[][]{data});
+
+         if (!database.compareAndUpdate(recordNumber, expectedVersion, data))
+            return false;
+
+         index(recordNumber, data);
+         if (uniqueIndex != null)
+            uniqueIndex.put(recordNumber, data);
+         writeVersion++;
+         return true;
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   public void delete(int recordNumber, long lockCookie) throws RecordNotFoundException, SecurityException
+   {
+      writeLock.lock();
+      try
+      {
+         database.delete(recordNumber, lockCookie);
+         markDeleted(recordNumber, true);
+         if (uniqueIndex != null)
+            uniqueIndex.remove(recordNumber);   // the key passes to a duplicate, or is free to be created again
+         writeVersion++;
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   public List<DatabaseRow> readAll()
+   {
+      return database.readAll();
+   }
+
+   public String[] read(int recordNumber) throws RecordNotFoundException
+   {
+      return database.read(recordNumber);
+   }
+
+   public boolean hasRow(int recordNumber, boolean allowDeleted)
+   {
+      return database.hasRow(recordNumber, allowDeleted);
+   }
+
+   public long getVersion(int recordNumber) throws RecordNotFoundException
+   {
+      return database.getVersion(recordNumber);
+   }
+
+   public long lock(int recordNumber) throws RecordNotFoundException
+   {
+      return database.lock(recordNumber);
+   }
+
+   public void unlock(int recordNumber, long cookie) throws RecordNotFoundException, SecurityException
+   {
+      database.unlock(recordNumber, cookie);
+   }
+}
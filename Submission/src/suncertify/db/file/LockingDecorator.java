@@ -1,13 +1,16 @@
 package suncertify.db.file;
 
 import suncertify.db.DatabaseException;
+import suncertify.db.DuplicateKeyException;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
+import suncertify.db.file.lock.LockTable;
 import suncertify.db.file.meta.DatabaseRow;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class LockingDecorator implements FileDatabaseDecorator
@@ -18,66 +21,153 @@ public class LockingDecorator implements FileDatabaseDecorator
    private static final Logger log = Logger.getLogger(LockingDecorator.class.getName());
 
    private FileDatabaseDecorator database;
-   private final Map<Integer, Long> lockedRows = new ConcurrentHashMap<Integer, Long>();
+   private final LockTable lockTable;
 
    public LockingDecorator(FileDatabaseDecorator database)
+   {
+      this(database, new LockTable());
+   }
+
+   public LockingDecorator(FileDatabaseDecorator database, LockTable lockTable)
    {
       this.database = database;
+      this.lockTable = lockTable;
    }
 
    public long lock(int recordNumber) throws RecordNotFoundException
+   {
+      return lock(recordNumber, Thread.currentThread());
+   }
+
+   public long lock(int recordNumber, Object client) throws RecordNotFoundException
    {
       log.fine(Thread.currentThread().getName() + " attempting to lock " + recordNumber);
 
       validateRow(recordNumber, ALLOW_DELETED_ROWS_TO_BE_LOCKED);
 
-      long lockId = new Random(System.nanoTime()).nextLong();
-
-      synchronized (lockedRows)
+      try
       {
-         while (lockedRows.containsKey(recordNumber))
-         {
-            try
-            {
-               log.fine(Thread.currentThread().getName() + " waiting for lock on " + recordNumber);
-               Long recordToWaitOn = lockedRows.get(recordNumber);
-               synchronized (recordToWaitOn)
-               {
-                  recordToWaitOn.wait();  // no timeout as per spec
-               }
-            } catch (InterruptedException e)
-            {
-               log.fine(Thread.currentThread().getName() + " interrupted waiting for lock on " + recordNumber);
-               throw new DatabaseException("Forced to stop waiting for lock", e);
-            }
-         }
-         
+         long lockId = lockTable.lock(recordNumber, client);  // no timeout as per spec, waiters are woken in arrival order
          log.fine(Thread.currentThread().getName() + " has lock on " + recordNumber);
-         lockedRows.put(recordNumber, lockId);
+
+         return lockId;
+      } catch (InterruptedException e)
+      {
+         log.fine(Thread.currentThread().getName() + " interrupted waiting for lock on " + recordNumber);
+         throw new DatabaseException("Forced to stop waiting for lock", e);
       }
+   }
+
+   public CompletableFuture<Long> lockAsync(int recordNumber) throws RecordNotFoundException
+   {
+      log.fine(Thread.currentThread().getName() + " queueing for lock on " + recordNumber);
+
+      validateRow(recordNumber, ALLOW_DELETED_ROWS_TO_BE_LOCKED);
+
+      return lockTable.lockAsync(recordNumber);
+   }
+
+   public long tryLock(int recordNumber) throws RecordNotFoundException, LockTimeoutException
+   {
+      return tryLock(recordNumber, Thread.currentThread());
+   }
+
+   public long tryLock(int recordNumber, Object client) throws RecordNotFoundException, LockTimeoutException
+   {
+      log.fine(Thread.currentThread().getName() + " attempting to lock " + recordNumber + " without waiting");
+
+      validateRow(recordNumber, ALLOW_DELETED_ROWS_TO_BE_LOCKED);
+
+      long lockId = lockTable.tryLock(recordNumber, client);
+      log.fine(Thread.currentThread().getName() + " has lock on " + recordNumber);
 
       return lockId;
    }
 
-   public void unlock(int recordNumber, long cookie) throws RecordNotFoundException, SecurityException
+   public long lock(int recordNumber, long timeout, TimeUnit unit) throws RecordNotFoundException, LockTimeoutException
    {
-      log.fine(Thread.currentThread().getName() + " attempting to unlock " + recordNumber);
+      return lock(recordNumber, timeout, unit, Thread.currentThread());
+   }
 
-      validateRow(recordNumber, ALLOW_DELETED_ROWS_TO_BE_UNLOCKED);
-      validateLock(recordNumber, cookie);
+   public long lock(int recordNumber, long timeout, TimeUnit unit, Object client) throws RecordNotFoundException, LockTimeoutException
+   {
+      log.fine(Thread.currentThread().getName() + " attempting to lock " + recordNumber + " within " + timeout + " " + unit);
+
+      validateRow(recordNumber, ALLOW_DELETED_ROWS_TO_BE_LOCKED);
+
+      try
+      {
+         long lockId = lockTable.lock(recordNumber, timeout, unit, client);
+         log.fine(Thread.currentThread().getName() + " has lock on " + recordNumber);
+
+         return lockId;
+      } catch (InterruptedException e)
+      {
+         log.fine(Thread.currentThread().getName() + " interrupted waiting for lock on " + recordNumber);
+         throw new DatabaseException("Forced to stop waiting for lock", e);
+      }
+   }
+
+   public long lockAll(int[] recordNumbers) throws RecordNotFoundException
+   {
+      return lockAll(recordNumbers, Thread.currentThread());
+   }
+
+   public long lockAll(int[] recordNumbers, Object client) throws RecordNotFoundException
+   {
+      log.fine(Thread.currentThread().getName() + " attempting to lock " + Arrays.toString(recordNumbers));
+
+      for (int recordNumber : recordNumbers)
+         validateRow(recordNumber, ALLOW_DELETED_ROWS_TO_BE_LOCKED);
 
-      synchronized (lockedRows)
+      try
       {
-         Long recordToNotifyOn = lockedRows.remove(recordNumber);
-         log.fine(Thread.currentThread().getName() + " has unlocked " + recordNumber);
+         long lockId = lockTable.lockAll(recordNumbers, client);
+         log.fine(Thread.currentThread().getName() + " has lock on " + Arrays.toString(recordNumbers));
 
-         synchronized (recordToNotifyOn)
-         {
-            recordToNotifyOn.notify(); // only wake a single thread as per spec
-         }
+         return lockId;
+      } catch (InterruptedException e)
+      {
+         log.fine(Thread.currentThread().getName() + " interrupted waiting for lock on " + Arrays.toString(recordNumbers));
+         throw new DatabaseException("Forced to stop waiting for lock", e);
       }
    }
 
+   public void updateAll(int[] recordNumbers, String[][] data, long lockCookie) throws RecordNotFoundException, SecurityException, DuplicateKeyException
+   {
+      if (recordNumbers.length != data.length)
+         throw new IllegalArgumentException("Need one row of data per record: " + recordNumbers.length + " != " + data.length);
+
+      for (int recordNumber : recordNumbers)
+         validateRow(recordNumber, false);
+
+      if (!lockTable.renewAll(recordNumbers, lockCookie))
+         throw new SecurityException("You do not own the locks for these rows");
+
+      database.updateAll(recordNumbers, data, lockCookie);   // checks every row before writing any
+   }
+
+   public void unlockAll(int[] recordNumbers, long cookie) throws RecordNotFoundException, SecurityException
+   {
+      log.fine(Thread.currentThread().getName() + " attempting to unlock " + Arrays.toString(recordNumbers));
+
+      for (int recordNumber : recordNumbers)
+         validateRow(recordNumber, ALLOW_DELETED_ROWS_TO_BE_UNLOCKED);
+
+      lockTable.unlockAll(recordNumbers, cookie);
+      log.fine(Thread.currentThread().getName() + " has unlocked " + Arrays.toString(recordNumbers));
+   }
+
+   public void unlock(int recordNumber, long cookie) throws RecordNotFoundException, SecurityException
+   {
+      log.fine(Thread.currentThread().getName() + " attempting to unlock " + recordNumber);
+
+      validateRow(recordNumber, ALLOW_DELETED_ROWS_TO_BE_UNLOCKED);
+
+      lockTable.unlock(recordNumber, cookie);   // hands the lock to a single waiting thread as per spec
+      log.fine(Thread.currentThread().getName() + " has unlocked " + recordNumber);
+   }
+
    private void validateRow(int recordNumber, boolean allowDeleted)
            throws RecordNotFoundException
    {
@@ -89,14 +179,11 @@ public class LockingDecorator implements FileDatabaseDecorator
    {
       log.fine(Thread.currentThread().getName() + " is validating lock on " + recordNumber);
 
-      synchronized (lockedRows)
-      {
-         if (!lockedRows.containsKey(recordNumber) || lockedRows.get(recordNumber) != lockCookie)
-            throw new SecurityException("You do not own the lock for this row");
-      }
+      if (!lockTable.renew(recordNumber, lockCookie))   // using a lock keeps its lease alive
+         throw new SecurityException("You do not own the lock for this row");
    }
 
-   public void update(int recordNumber, String[] data, long lockCookie) throws RecordNotFoundException, SecurityException
+   public void update(int recordNumber, String[] data, long lockCookie) throws RecordNotFoundException, SecurityException, DuplicateKeyException
    {
       validateRow(recordNumber, false);
       validateLock(recordNumber, lockCookie);
@@ -110,6 +197,27 @@ public class LockingDecorator implements FileDatabaseDecorator
       database.delete(recordNumber, lockCookie);
    }
 
+   public long getVersion(int recordNumber) throws RecordNotFoundException
+   {
+      return database.getVersion(recordNumber);
+   }
+
+   public boolean compareAndUpdate(int recordNumber, long expectedVersion, String[] data) throws RecordNotFoundException, DuplicateKeyException
+   {
+      validateRow(recordNumber, false);
+
+      if (!lockTable.tryHold(recordNumber))   // a client has it locked, so it may be about to change
+         return false;
+
+      try
+      {
+         return database.compareAndUpdate(recordNumber, expectedVersion, data);
+      } finally
+      {
+         lockTable.releaseHold(recordNumber);
+      }
+   }
+
    public boolean hasRow(int recordNumber, boolean allowDeleted)
    {
       return database.hasRow(recordNumber, allowDeleted);
@@ -125,7 +233,7 @@ public class LockingDecorator implements FileDatabaseDecorator
       return database.read(recordNumber);
    }
 
-   public int create(String[] content)
+   public int create(String[] content) throws DuplicateKeyException
    {
       return database.create(content);
    }
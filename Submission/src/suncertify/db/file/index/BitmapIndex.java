@@ -0,0 +1,20 @@
+package suncertify.db.file.index;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BitmapIndex extends KeyedIndex<HashMap<String, BitSet>>
+{
+   public BitmapIndex()
+   {
+      super(new HashMap<String, BitSet>());   // one bitmap per distinct value, so keep to columns with few
+   }
+
+   protected void collect(String prefix, BitSet result)
+   {
+      for (Map.Entry<String, BitSet> entry : recordsByKey.entrySet())
+         if (entry.getKey().startsWith(prefix))
+            result.or(entry.getValue());
+   }
+}
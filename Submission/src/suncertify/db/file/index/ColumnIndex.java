@@ -0,0 +1,14 @@
+package suncertify.db.file.index;
+
+import java.util.BitSet;
+
+public interface ColumnIndex
+{
+   void put(int recordNumber, String value);
+
+   void remove(int recordNumber);
+
+   BitSet startingWith(String prefix);
+
+   int size();
+}
@@ -0,0 +1,114 @@
+package suncertify.db.file.index;
+
+import suncertify.lang.StringUtils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// tracks which folded key each record is under, the subclasses only differ in how the keys are searched
+abstract class KeyedIndex<M extends Map<String, BitSet>> implements ColumnIndex
+{
+   protected final M recordsByKey;
+   private String[] keys = new String[0];   // indexed by record number, null when not in the index
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+   KeyedIndex(M recordsByKey)
+   {
+      this.recordsByKey = recordsByKey;
+   }
+
+   // adds the records under every key starting with the folded prefix, called with the read lock held
+   protected abstract void collect(String prefix, BitSet result);
+
+   public void put(int recordNumber, String value)
+   {
+      String key = fold(value);
+
+      lock.writeLock().lock();
+      try
+      {
+         removeKey(recordNumber);
+
+         BitSet records = recordsByKey.get(key);
+         if (records == null)
+         {
+            records = new BitSet();
+            recordsByKey.put(key, records);
+         }
+         records.set(recordNumber);
+
+         if (recordNumber >= keys.length)
+            keys = Arrays.copyOf(keys, Math.max(recordNumber + 1, keys.length * 2));
+         keys[recordNumber] = key;
+      } finally
+      {
+         lock.writeLock().unlock();
+      }
+   }
+
+   public void remove(int recordNumber)
+   {
+      lock.writeLock().lock();
+      try
+      {
+         removeKey(recordNumber);
+      } finally
+      {
+         lock.writeLock().unlock();
+      }
+   }
+
+   public BitSet startingWith(String prefix)
+   {
+      String folded = fold(prefix);
+      BitSet result = new BitSet();
+
+      lock.readLock().lock();
+      try
+      {
+         collect(folded, result);
+      } finally
+      {
+         lock.readLock().unlock();
+      }
+
+      return result;
+   }
+
+   public int size()
+   {
+      lock.readLock().lock();
+      try
+      {
+         int size = 0;
+         for (BitSet records : recordsByKey.values())
+            size += records.cardinality();
+
+         return size;
+      } finally
+      {
+         lock.readLock().unlock();
+      }
+   }
+
+   private void removeKey(int recordNumber)
+   {
+      if (recordNumber >= keys.length || keys[recordNumber] == null)
+         return;
+
+      BitSet records = recordsByKey.get(keys[recordNumber]);
+      records.clear(recordNumber);
+      if (records.isEmpty())
+         recordsByKey.remove(keys[recordNumber]);
+
+      keys[recordNumber] = null;
+   }
+
+   private String fold(String value)
+   {
+      return StringUtils.foldCase(value);   // matches what StartsWithFilter accepts
+   }
+}
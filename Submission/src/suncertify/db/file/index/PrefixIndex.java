@@ -0,0 +1,25 @@
+package suncertify.db.file.index;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class PrefixIndex extends KeyedIndex<TreeMap<String, BitSet>>
+{
+   public PrefixIndex()
+   {
+      super(new TreeMap<String, BitSet>());
+   }
+
+   protected void collect(String prefix, BitSet result)
+   {
+      // keys sharing a prefix sit next to each other, so stop at the first one without it
+      for (Map.Entry<String, BitSet> entry : recordsByKey.tailMap(prefix, true).entrySet())
+      {
+         if (!entry.getKey().startsWith(prefix))
+            break;
+
+         result.or(entry.getValue());
+      }
+   }
+}
@@ -0,0 +1,224 @@
+package suncertify.db.file.index;
+
+import suncertify.db.filter.ColumnType;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class RangeIndex
+{
+   private final ColumnType type;
+   private final Lock writeLock = new ReentrantLock();
+
+   private long[] values = new long[0];        // parsed value by record number, guarded by the write lock
+   private final BitSet present = new BitSet();
+   private volatile Sorted sorted;   // never modified once published, null until the first search so loading is not quadratic
+
+   public RangeIndex(ColumnType type)
+   {
+      this.type = type;
+   }
+
+   public void put(int recordNumber, String value)
+   {
+      long parsed;
+      try
+      {
+         parsed = type.parse(value);
+      } catch (IllegalArgumentException e)
+      {
+         remove(recordNumber);   // nothing a range can match
+         return;
+      }
+
+      writeLock.lock();
+      try
+      {
+         Sorted current = sorted;
+         if (current != null)
+         {
+            if (present.get(recordNumber))
+               current = current.without(recordNumber, values[recordNumber]);
+            sorted = current.with(recordNumber, parsed);
+         }
+
+         if (recordNumber >= values.length)
+            values = Arrays.copyOf(values, Math.max(recordNumber + 1, values.length * 2));
+         values[recordNumber] = parsed;
+         present.set(recordNumber);
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   public void remove(int recordNumber)
+   {
+      writeLock.lock();
+      try
+      {
+         if (!present.get(recordNumber))
+            return;
+
+         if (sorted != null)
+            sorted = sorted.without(recordNumber, values[recordNumber]);
+         present.clear(recordNumber);
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   public BitSet between(long min, long max)
+   {
+      Sorted current = sorted();
+      BitSet result = new BitSet();
+
+      int to = current.firstAbove(max);
+      for (int i = current.firstAtLeast(min); i < to; i++)
+         result.set(current.records[i]);
+
+      return result;
+   }
+
+   public int size()
+   {
+      return sorted().values.length;
+   }
+
+   private Sorted sorted()
+   {
+      Sorted current = sorted;
+      if (current != null)
+         return current;
+
+      writeLock.lock();
+      try
+      {
+         if (sorted == null)
+            sorted = Sorted.of(values, present);
+
+         return sorted;
+      } finally
+      {
+         writeLock.unlock();
+      }
+   }
+
+   private static class Sorted
+   {
+      private final long[] values;
+      private final int[] records;
+
+      private Sorted(long[] values, int[] records)
+      {
+         this.values = values;
+         this.records = records;
+      }
+
+      private static Sorted of(long[] values, BitSet present)
+      {
+         int[] records = new int[present.cardinality()];
+         int count = 0;
+         for (int recordNumber = present.nextSetBit(0); recordNumber >= 0; recordNumber = present.nextSetBit(recordNumber + 1))
+            records[count++] = recordNumber;
+
+         int[] buffer = new int[records.length];
+         for (int width = 1; width < records.length; width *= 2)
+         {
+            for (int from = 0; from < records.length; from += 2 * width)
+               merge(values, records, buffer, from, Math.min(from + width, records.length), Math.min(from + 2 * width, records.length));
+
+            int[] merged = records;
+            records = buffer;
+            buffer = merged;
+         }
+
+         long[] sortedValues = new long[records.length];
+         for (int i = 0; i < records.length; i++)
+            sortedValues[i] = values[records[i]];
+
+         return new Sorted(sortedValues, records);
+      }
+
+      // merges the runs [from, middle) and [middle, to) of records, ordered by value, into the same place in target
+      private static void merge(long[] values, int[] records, int[] target, int from, int middle, int to)
+      {
+         int left = from;
+         int right = middle;
+         for (int i = from; i < to; i++)
+         {
+            if (right >= to || (left < middle && values[records[left]] <= values[records[right]]))
+               target[i] = records[left++];
+            else
+               target[i] = records[right++];
+         }
+      }
+
+      private Sorted with(int recordNumber, long value)
+      {
+         int at = firstAbove(value);
+
+         long[] newValues = new long[values.length + 1];
+         int[] newRecords = new int[records.length + 1];
+         System.arraycopy(values, 0, newValues, 0, at);
+         System.arraycopy(records, 0, newRecords, 0, at);
+         newValues[at] = value;
+         newRecords[at] = recordNumber;
+         System.arraycopy(values, at, newValues, at + 1, values.length - at);
+         System.arraycopy(records, at, newRecords, at + 1, records.length - at);
+
+         return new Sorted(newValues, newRecords);
+      }
+
+      private Sorted without(int recordNumber, long value)
+      {
+         int at = firstAtLeast(value);
+         while (records[at] != recordNumber)
+            at++;
+
+         long[] newValues = new long[values.length - 1];
+         int[] newRecords = new int[records.length - 1];
+         System.arraycopy(values, 0, newValues, 0, at);
+         System.arraycopy(records, 0, newRecords, 0, at);
+         System.arraycopy(values, at + 1, newValues, at, values.length - at - 1);
+         System.arraycopy(records, at + 1, newRecords, at, records.length - at - 1);
+
+         return new Sorted(newValues, newRecords);
+      }
+
+      private int firstAtLeast(long value)
+      {
+         int low = 0;
+         int high = values.length;
+         while (low < high)
+         {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value)
+               low = middle + 1;
+            else
+               high = middle;
+         }
+
+         return low;
+      }
+
+      private int firstAbove(long value)
+      {
+         int low = 0;
+         int high = values.length;
+         while (low < high)
+         {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= value)
+               low = middle + 1;
+            else
+               high = middle;
+         }
+
+         return low;
+      }
+   }
+}
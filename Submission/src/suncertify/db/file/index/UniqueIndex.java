@@ -0,0 +1,196 @@
+package suncertify.db.file.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class UniqueIndex
+{
+   public static final int NONE = -1;
+
+   private static final char SEPARATOR = '\u0000';   // cannot appear in the fixed width ASCII fields
+
+   private final int[] columns;
+   private final Map<String, Integer> recordsByKey = new HashMap<String, Integer>();   // the record holding each key
+   private final Map<String, BitSet> duplicates = new HashMap<String, BitSet>();      // other records with a held key, written before keys were enforced
+   private String[] keys = new String[0];   // indexed by record number, null when not in the index
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+   public UniqueIndex(int... columns)
+   {
+      this.columns = columns;
+   }
+
+   public int get(String[] data)
+   {
+      String key = keyOf(data);
+
+      lock.readLock().lock();
+      try
+      {
+         Integer recordNumber = recordsByKey.get(key);
+         return recordNumber == null ? NONE : recordNumber;
+      } finally
+      {
+         lock.readLock().unlock();
+      }
+   }
+
+   // the first row whose new key would still be held by another record once every row is written, or NONE
+   public int clash(int[] recordNumbers, String[][] data)
+   {
+      Map<Integer, String> newKeys = new HashMap<Integer, String>();
+      for (int i = 0; i < recordNumbers.length; i++)
+         newKeys.put(recordNumbers[i], keyOf(data[i]));
+
+      lock.readLock().lock();
+      try
+      {
+         Set<String> claimed = new HashSet<String>();
+         for (int i = 0; i < recordNumbers.length; i++)
+         {
+            String key = keyOf(data[i]);
+            if (recordNumbers[i] < keys.length && key.equals(keys[recordNumbers[i]]))
+               continue;   // keeps its key
+
+            if (!claimed.add(key) || staysHeld(key, newKeys))
+               return i;
+         }
+
+         return NONE;
+      } finally
+      {
+         lock.readLock().unlock();
+      }
+   }
+
+   // false when another record already holds the key, the record is then kept as a duplicate of it
+   public boolean put(int recordNumber, String[] data)
+   {
+      String key = keyOf(data);
+
+      lock.writeLock().lock();
+      try
+      {
+         if (recordNumber < keys.length && key.equals(keys[recordNumber]))
+            return recordsByKey.get(key) == recordNumber;
+
+         removeKey(recordNumber);
+
+         if (recordNumber >= keys.length)
+            keys = Arrays.copyOf(keys, Math.max(recordNumber + 1, keys.length * 2));
+         keys[recordNumber] = key;
+
+         if (!recordsByKey.containsKey(key))
+         {
+            recordsByKey.put(key, recordNumber);
+            return true;
+         }
+
+         BitSet records = duplicates.get(key);
+         if (records == null)
+         {
+            records = new BitSet();
+            duplicates.put(key, records);
+         }
+         records.set(recordNumber);
+
+         return false;
+      } finally
+      {
+         lock.writeLock().unlock();
+      }
+   }
+
+   public void remove(int recordNumber)
+   {
+      lock.writeLock().lock();
+      try
+      {
+         removeKey(recordNumber);
+      } finally
+      {
+         lock.writeLock().unlock();
+      }
+   }
+
+   public int size()
+   {
+      lock.readLock().lock();
+      try
+      {
+         return recordsByKey.size();
+      } finally
+      {
+         lock.readLock().unlock();
+      }
+   }
+
+   private boolean staysHeld(String key, Map<Integer, String> newKeys)
+   {
+      Integer holder = recordsByKey.get(key);
+      if (holder == null)
+         return false;
+
+      if (keeps(holder, key, newKeys))
+         return true;
+
+      BitSet records = duplicates.get(key);
+      if (records != null)
+         for (int recordNumber = records.nextSetBit(0); recordNumber >= 0; recordNumber = records.nextSetBit(recordNumber + 1))
+            if (keeps(recordNumber, key, newKeys))
+               return true;
+
+      return false;
+   }
+
+   private boolean keeps(int recordNumber, String key, Map<Integer, String> newKeys)
+   {
+      String newKey = newKeys.get(recordNumber);
+      return newKey == null || newKey.equals(key);
+   }
+
+   private void removeKey(int recordNumber)
+   {
+      if (recordNumber >= keys.length || keys[recordNumber] == null)
+         return;
+
+      String key = keys[recordNumber];
+      keys[recordNumber] = null;
+
+      BitSet records = duplicates.get(key);
+      if (recordsByKey.get(key) == recordNumber)
+      {
+         if (records == null)
+         {
+            recordsByKey.remove(key);
+            return;
+         }
+
+         recordNumber = records.nextSetBit(0);   // a duplicate takes over the key
+         recordsByKey.put(key, recordNumber);
+      }
+
+      records.clear(recordNumber);
+      if (records.isEmpty())
+         duplicates.remove(key);
+   }
+
+   private String keyOf(String[] data)
+   {
+      StringBuilder key = new StringBuilder();
+      for (int column : columns)
+      {
+         if (column < data.length && data[column] != null)
+            key.append(data[column].trim());   // as the cache holds it
+         key.append(SEPARATOR);
+      }
+
+      return key.toString();
+   }
+}
@@ -0,0 +1,81 @@
+package suncertify.db.file.lock;
+
+import suncertify.db.DeadlockException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+class DeadlockDetector
+{
+   private static final Logger log = Logger.getLogger(DeadlockDetector.class.getName());
+
+   private final Map<Object, RecordLock> waitsFor = new HashMap<Object, RecordLock>();   // by client, not thread, as pooled threads serve many
+   private long deadlocksDetected = 0;
+   private final Lock lock = new ReentrantLock();
+
+   void startWaiting(Object waiter, RecordLock recordLock) throws DeadlockException
+   {
+      lock.lock();
+      try
+      {
+         // a client waits on at most one record, so following the holders is enough to find a cycle back to the waiter
+         RecordLock next = recordLock;
+         for (int steps = 0; next != null && steps <= waitsFor.size(); steps++)
+         {
+            Object holder = next.getOwner();
+            if (waiter.equals(holder))   // clients may pass equal keys, such as a session id, rather than one object
+            {
+               deadlocksDetected++;
+               log.warning(waiter + " would deadlock waiting for lock on " + recordLock.getRecordNumber());
+               throw new DeadlockException("Waiting for record " + recordLock.getRecordNumber() + " would deadlock");
+            }
+
+            next = holder == null ? null : waitsFor.get(holder);
+         }
+
+         waitsFor.put(waiter, recordLock);
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   void stopWaiting(Object waiter)
+   {
+      lock.lock();
+      try
+      {
+         waitsFor.remove(waiter);
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   long getDeadlocksDetected()
+   {
+      lock.lock();
+      try
+      {
+         return deadlocksDetected;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   int getWaitingClients()
+   {
+      lock.lock();
+      try
+      {
+         return waitsFor.size();
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+}
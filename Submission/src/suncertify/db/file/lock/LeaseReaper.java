@@ -0,0 +1,112 @@
+package suncertify.db.file.lock;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+class LeaseReaper implements Runnable
+{
+   private static final Logger log = Logger.getLogger(LeaseReaper.class.getName());
+
+   private static final int WHEEL_SIZE = 64;
+   private static final long SMALLEST_TICK = TimeUnit.MILLISECONDS.toNanos(1);
+
+   private final long leaseNanos;
+   private final long tickNanos;
+   private final long origin = System.nanoTime();
+
+   private final List<Set<RecordLock>> wheel;
+   private long currentTick = 0;
+   private final Lock lock = new ReentrantLock();
+   private final Condition tick = lock.newCondition();
+   private volatile boolean running = true;
+
+   LeaseReaper(long leaseNanos)
+   {
+      this.leaseNanos = leaseNanos;
+      this.tickNanos = Math.max(SMALLEST_TICK, leaseNanos / WHEEL_SIZE);
+
+      wheel = new ArrayList<Set<RecordLock>>(WHEEL_SIZE);
+      for (int i = 0; i < WHEEL_SIZE; i++)
+         wheel.add(new HashSet<RecordLock>());
+
+      Thread thread = new Thread(this, "lease-reaper");
+      thread.setDaemon(true);   // never keeps the JVM alive, LockTable.close ends it sooner
+      thread.start();
+   }
+
+   long getLeaseNanos()
+   {
+      return leaseNanos;
+   }
+
+   void schedule(RecordLock recordLock, long expiresAt)
+   {
+      lock.lock();
+      try
+      {
+         long tick = (expiresAt - origin + tickNanos - 1) / tickNanos;
+         tick = Math.max(tick, currentTick + 1);   // never into a slot that has already been swept
+
+         wheel.get((int) (tick % WHEEL_SIZE)).add(recordLock);
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   void stop()
+   {
+      lock.lock();
+      try
+      {
+         running = false;
+         tick.signal();   // rather than sleeping out the tick
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   public void run()
+   {
+      while (running)
+      {
+         Set<RecordLock> due;
+         try
+         {
+            lock.lock();
+            try
+            {
+               long sleep = origin + (currentTick + 1) * tickNanos - System.nanoTime();
+               while (sleep > 0 && running)
+                  sleep = tick.awaitNanos(sleep);
+
+               if (!running)
+                  return;
+
+               currentTick++;
+               int slot = (int) (currentTick % WHEEL_SIZE);
+               due = wheel.set(slot, new HashSet<RecordLock>());
+            } finally
+            {
+               lock.unlock();
+            }
+         } catch (InterruptedException e)
+         {
+            log.warning("Lease reaper interrupted, locks will no longer expire");
+            return;
+         }
+
+         long now = System.nanoTime();
+         for (RecordLock recordLock : due)
+            recordLock.expireIfDue(now);
+      }
+   }
+}
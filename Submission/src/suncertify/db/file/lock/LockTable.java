@@ -0,0 +1,226 @@
+package suncertify.db.file.lock;
+
+import suncertify.db.LockTimeoutException;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+public class LockTable
+{
+   private final ConcurrentMap<Integer, RecordLock> locks = new ConcurrentHashMap<Integer, RecordLock>();
+   private final LeaseReaper reaper;
+   private final DeadlockDetector detector;
+   private final long holdCookie = newCookie();   // only ever used inside the table, never given to a client
+
+   public LockTable()
+   {
+      this(0, TimeUnit.MILLISECONDS, false);
+   }
+
+   public LockTable(long leaseTime, TimeUnit unit)
+   {
+      this(leaseTime, unit, false);
+   }
+
+   /**
+    * A table with a lease starts a daemon thread to expire locks. It does not
+    * keep the JVM alive, but it runs until close is called, so whoever creates
+    * a leased table should close it when done.
+    *
+    * @param leaseTime       how long a lock is held without being used, zero for locks that never expire
+    * @param unit            unit of the lease time
+    * @param detectDeadlocks whether a locker that would complete a cycle of waiting clients is refused
+    */
+   public LockTable(long leaseTime, TimeUnit unit, boolean detectDeadlocks)
+   {
+      reaper = leaseTime > 0 ? new LeaseReaper(unit.toNanos(leaseTime)) : null;
+      detector = detectDeadlocks ? new DeadlockDetector() : null;
+   }
+
+   public long lock(int recordNumber) throws InterruptedException
+   {
+      return lock(recordNumber, Thread.currentThread());   // without a named client, each thread is one
+   }
+
+   public long lock(int recordNumber, Object client) throws InterruptedException
+   {
+      long cookie = newCookie();
+      lockFor(recordNumber).acquire(cookie, client, RecordLock.WAIT_FOREVER);
+
+      return cookie;
+   }
+
+   public CompletableFuture<Long> lockAsync(int recordNumber)
+   {
+      return lockFor(recordNumber).acquireAsync(newCookie());
+   }
+
+   public long tryLock(int recordNumber) throws LockTimeoutException
+   {
+      return tryLock(recordNumber, Thread.currentThread());
+   }
+
+   public long tryLock(int recordNumber, Object client) throws LockTimeoutException
+   {
+      long cookie = newCookie();
+
+      if (!lockFor(recordNumber).tryAcquire(cookie, client))
+         throw new LockTimeoutException("Record is already locked: " + recordNumber);
+
+      return cookie;
+   }
+
+   public long lock(int recordNumber, long timeout, TimeUnit unit) throws InterruptedException, LockTimeoutException
+   {
+      return lock(recordNumber, timeout, unit, Thread.currentThread());
+   }
+
+   public long lock(int recordNumber, long timeout, TimeUnit unit, Object client) throws InterruptedException, LockTimeoutException
+   {
+      long cookie = newCookie();
+
+      if (!lockFor(recordNumber).acquire(cookie, client, Math.max(0, unit.toNanos(timeout))))
+         throw new LockTimeoutException("Timed out waiting for lock on record: " + recordNumber);
+
+      return cookie;
+   }
+
+   public long lockAll(int[] recordNumbers) throws InterruptedException
+   {
+      return lockAll(recordNumbers, Thread.currentThread());
+   }
+
+   public long lockAll(int[] recordNumbers, Object client) throws InterruptedException
+   {
+      int[] ordered = inLockingOrder(recordNumbers);
+      long cookie = newCookie();
+
+      int acquired = 0;
+      try
+      {
+         for (; acquired < ordered.length; acquired++)
+            lockFor(ordered[acquired]).acquire(cookie, client, RecordLock.WAIT_FOREVER);
+      } finally
+      {
+         if (acquired < ordered.length)
+            for (int i = acquired - 1; i >= 0; i--)
+               locks.get(ordered[i]).release(cookie);
+      }
+
+      return cookie;
+   }
+
+   public void unlockAll(int[] recordNumbers, long cookie) throws SecurityException
+   {
+      int[] ordered = inLockingOrder(recordNumbers);
+
+      if (!isHeldBy(ordered, cookie))
+         throw new SecurityException("You do not own the locks for these rows");
+
+      for (int i = ordered.length - 1; i >= 0; i--)
+         locks.get(ordered[i]).release(cookie);
+   }
+
+   public boolean renewAll(int[] recordNumbers, long cookie)
+   {
+      for (int recordNumber : recordNumbers)
+         if (!renew(recordNumber, cookie))
+            return false;
+
+      return true;
+   }
+
+   public boolean tryHold(int recordNumber)
+   {
+      return lockFor(recordNumber).tryAcquire(holdCookie, null);
+   }
+
+   public void releaseHold(int recordNumber)
+   {
+      locks.get(recordNumber).release(holdCookie);
+   }
+
+   public void unlock(int recordNumber, long cookie) throws SecurityException
+   {
+      RecordLock recordLock = locks.get(recordNumber);
+      if (recordLock == null)
+         throw new SecurityException("You do not own the lock for this row");
+
+      recordLock.release(cookie);
+   }
+
+   public boolean isHeldBy(int recordNumber, long cookie)
+   {
+      RecordLock recordLock = locks.get(recordNumber);
+      return recordLock != null && recordLock.isHeldBy(cookie);
+   }
+
+   public boolean renew(int recordNumber, long cookie)
+   {
+      RecordLock recordLock = locks.get(recordNumber);
+      return recordLock != null && recordLock.renew(cookie);
+   }
+
+   public long getDeadlocksDetected()
+   {
+      return detector == null ? 0 : detector.getDeadlocksDetected();
+   }
+
+   public int getWaitingClients()
+   {
+      return detector == null ? 0 : detector.getWaitingClients();
+   }
+
+   /**
+    * Stops the thread expiring leases, held locks then never expire. Does
+    * nothing for a table without a lease.
+    */
+   public void close()
+   {
+      if (reaper != null)
+         reaper.stop();
+   }
+
+   private boolean isHeldBy(int[] recordNumbers, long cookie)
+   {
+      for (int recordNumber : recordNumbers)
+         if (!isHeldBy(recordNumber, cookie))
+            return false;
+
+      return true;
+   }
+
+   private int[] inLockingOrder(int[] recordNumbers)
+   {
+      int[] sorted = recordNumbers.clone();   // every multi-record locker goes in ascending order so none can deadlock
+      Arrays.sort(sorted);
+
+      int unique = 0;
+      for (int i = 0; i < sorted.length; i++)
+         if (i == 0 || sorted[i] != sorted[i - 1])
+            sorted[unique++] = sorted[i];
+
+      return Arrays.copyOf(sorted, unique);
+   }
+
+   private RecordLock lockFor(int recordNumber)
+   {
+      RecordLock recordLock = locks.get(recordNumber);
+      if (recordLock != null)
+         return recordLock;
+
+      RecordLock created = new RecordLock(recordNumber, reaper, detector);
+      recordLock = locks.putIfAbsent(recordNumber, created);
+
+      return recordLock == null ? created : recordLock;
+   }
+
+   private long newCookie()
+   {
+      return new Random(System.nanoTime()).nextLong();
+   }
+}
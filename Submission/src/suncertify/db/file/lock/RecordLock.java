@@ -0,0 +1,252 @@
+package suncertify.db.file.lock;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+class RecordLock
+{
+   private static final Logger log = Logger.getLogger(RecordLock.class.getName());
+
+   static final long WAIT_FOREVER = -1;
+
+   private final int recordNumber;
+   private final LeaseReaper reaper;            // null when locks never expire
+   private final DeadlockDetector detector;     // null when deadlocks are not looked for
+
+   private boolean held = false;
+   private long cookie;
+   private volatile Object owner;   // the client the lock was granted to, null when unknown
+   private long expiresAt;
+   private final Queue<Waiter> waiters = new LinkedList<Waiter>();
+   private final Lock lock = new ReentrantLock();   // never held while parked, waiters block on their own Waiter
+
+   RecordLock(int recordNumber, LeaseReaper reaper, DeadlockDetector detector)
+   {
+      this.recordNumber = recordNumber;
+      this.reaper = reaper;
+      this.detector = detector;
+   }
+
+   int getRecordNumber()
+   {
+      return recordNumber;
+   }
+
+   Object getOwner()
+   {
+      return owner;
+   }
+
+   boolean tryAcquire(long newCookie, Object client)
+   {
+      lock.lock();
+      try
+      {
+         if (held)
+            return false;
+
+         held = true;
+         grantTo(newCookie, client);
+         return true;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   boolean acquire(long newCookie, Object client, long timeoutNanos) throws InterruptedException
+   {
+      Waiter waiter;
+      lock.lock();
+      try
+      {
+         if (tryAcquire(newCookie, client))
+            return true;
+
+         if (timeoutNanos == 0)
+            return false;
+
+         if (detector != null)
+            detector.startWaiting(client, this);
+
+         waiter = new Waiter(newCookie, client);
+         waiters.add(waiter);
+      } finally
+      {
+         lock.unlock();
+      }
+
+      try
+      {
+         return waiter.await(timeoutNanos) || keepIfGranted(waiter);
+      } catch (InterruptedException e)
+      {
+         if (keepIfGranted(waiter))
+            release(newCookie);   // granted just as we gave up, pass it straight on
+
+         throw e;
+      } finally
+      {
+         if (detector != null)
+            detector.stopWaiting(client);
+      }
+   }
+
+   CompletableFuture<Long> acquireAsync(long newCookie)
+   {
+      CompletableFuture<Long> granted = new CompletableFuture<Long>();
+
+      lock.lock();
+      try
+      {
+         if (tryAcquire(newCookie, null))
+         {
+            granted.complete(newCookie);
+            return granted;
+         }
+
+         final Waiter waiter = new Waiter(newCookie, granted);   // no thread parks, the future is completed on hand off
+         waiters.add(waiter);
+
+         granted.whenComplete(new BiConsumer<Long, Throwable>()
+         {
+            public void accept(Long cookie, Throwable failure)
+            {
+               if (failure != null)
+                  abandon(waiter);
+            }
+         });
+      } finally
+      {
+         lock.unlock();
+      }
+
+      return granted;
+   }
+
+   boolean isHeldBy(long lockCookie)
+   {
+      lock.lock();
+      try
+      {
+         return held && cookie == lockCookie;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   boolean renew(long lockCookie)
+   {
+      lock.lock();
+      try
+      {
+         if (!isHeldBy(lockCookie))
+            return false;
+
+         if (reaper != null)
+            expiresAt = System.nanoTime() + reaper.getLeaseNanos();   // the reaper picks up the new time when it next looks
+
+         return true;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   void release(long lockCookie)
+   {
+      lock.lock();
+      try
+      {
+         if (!isHeldBy(lockCookie))
+            throw new SecurityException("You do not own the lock for this row");
+
+         handOff();
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   void expireIfDue(long now)
+   {
+      lock.lock();
+      try
+      {
+         if (!held)
+            return;
+
+         if (expiresAt - now > 0)
+         {
+            reaper.schedule(this, expiresAt);
+            return;
+         }
+
+         log.info("Lease expired on lock for " + recordNumber);
+         handOff();
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   private boolean keepIfGranted(Waiter waiter)
+   {
+      lock.lock();
+      try
+      {
+         if (waiter.isGranted())
+            return true;
+
+         waiters.remove(waiter);
+         return false;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   private void abandon(Waiter waiter)
+   {
+      lock.lock();
+      try
+      {
+         waiters.remove(waiter);
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   private void handOff()
+   {
+      Waiter next;
+      while ((next = waiters.poll()) != null)
+      {
+         grantTo(next.getCookie(), next.getClient());
+         if (next.grant())
+            return;
+      }
+
+      held = false;
+      owner = null;
+   }
+
+   private void grantTo(long newCookie, Object newOwner)
+   {
+      cookie = newCookie;
+      owner = newOwner;
+
+      if (reaper != null)
+      {
+         expiresAt = System.nanoTime() + reaper.getLeaseNanos();
+         reaper.schedule(this, expiresAt);
+      }
+   }
+}
@@ -0,0 +1,99 @@
+package suncertify.db.file.lock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+class Waiter
+{
+   private final long cookie;
+   private final Object client;                          // null when nobody is parked waiting
+   private final CompletableFuture<Long> continuation;   // null when a thread is parked waiting
+
+   private final Lock lock = new ReentrantLock();
+   private final Condition grantedCondition = lock.newCondition();
+   private boolean granted = false;
+
+   Waiter(long cookie, Object client)
+   {
+      this.cookie = cookie;
+      this.client = client;
+      this.continuation = null;
+   }
+
+   Waiter(long cookie, CompletableFuture<Long> continuation)
+   {
+      this.cookie = cookie;
+      this.client = null;
+      this.continuation = continuation;
+   }
+
+   long getCookie()
+   {
+      return cookie;
+   }
+
+   Object getClient()
+   {
+      return client;
+   }
+
+   boolean grant()
+   {
+      if (continuation != null)
+         return continuation.complete(cookie);   // false once the caller has given up, so the lock moves on
+
+      lock.lock();
+      try
+      {
+         granted = true;
+         grantedCondition.signal();
+         return true;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   boolean isGranted()
+   {
+      lock.lock();
+      try
+      {
+         return granted;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   boolean await(long timeoutNanos) throws InterruptedException
+   {
+      lock.lock();
+      try
+      {
+         if (timeoutNanos < 0)
+         {
+            while (!granted)
+               grantedCondition.await();
+
+            return true;
+         }
+
+         long remaining = timeoutNanos;
+         while (!granted)
+         {
+            if (remaining <= 0)
+               return false;
+
+            remaining = grantedCondition.awaitNanos(remaining);
+         }
+
+         return true;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+}
@@ -5,12 +5,19 @@ public class DatabaseRow
   private int id;
   private boolean deleted;
   private String[] data;
+  private long version;
 
   public DatabaseRow(int id, boolean deleted, String[] data)
+  {
+    this(id, deleted, data, 0);
+  }
+
+  public DatabaseRow(int id, boolean deleted, String[] data, long version)
   {
     this.id = id;
     this.deleted = deleted;
     this.data = data;
+    this.version = version;
   }
 
   public int getId()
@@ -28,4 +35,9 @@ public class DatabaseRow
   {
     return data;
   }
+
+  public long getVersion()
+  {
+    return version;
+  }
 }
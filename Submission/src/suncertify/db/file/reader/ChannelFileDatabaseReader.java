@@ -0,0 +1,221 @@
+package suncertify.db.file.reader;
+
+import suncertify.db.DatabaseException;
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.file.meta.LogicalDelete;
+import suncertify.db.file.meta.MetaData;
+import suncertify.db.file.meta.MetaDataReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+public class ChannelFileDatabaseReader implements FileDatabaseReader
+{
+   private static final Logger log = Logger.getLogger(ChannelFileDatabaseReader.class.getName());
+
+   private static final int NUMBER_OF_SLOT_LOCKS = 64;
+
+   private MetaData metaData;
+   private RecordCodec codec;
+   private FileChannel channel;
+
+   private final ReadWriteLock[] slotLocks = new ReadWriteLock[NUMBER_OF_SLOT_LOCKS];
+   private final Lock appendLock = new ReentrantLock();
+   private volatile int rowCount;
+   private final FreeSlots freeSlots = new FreeSlots();
+
+   public ChannelFileDatabaseReader(File file) throws FileNotFoundException, DatabaseException
+   {
+      log.info("ChannelFileDatabaseReader created using : " + file.getAbsolutePath());
+
+      RandomAccessFile database = new RandomAccessFile(file, "rw");
+      metaData = new MetaDataReader().setup(database);
+      codec = new RecordCodec(metaData);
+      channel = database.getChannel();
+
+      for (int i = 0; i < slotLocks.length; i++)
+         slotLocks[i] = new ReentrantReadWriteLock();
+
+      try
+      {
+         rowCount = (int) ((channel.size() - metaData.getDataStartPointer()) / metaData.getSizeOfRecord());
+      } catch (IOException e)
+      {
+         throw new DatabaseException("Cannot get file size: " + e.getMessage(), e);
+      }
+
+      for (DatabaseRow databaseRow : readAll())
+         if (!databaseRow.isValid())
+            freeSlots.release(databaseRow.getId());
+   }
+
+   public List<DatabaseRow> readAll()
+   {
+      int count = rowCount;
+      List<DatabaseRow> result = new ArrayList<DatabaseRow>(count);
+
+      ByteBuffer record = ByteBuffer.allocate(codec.getSizeOfRecord());
+      for (int recordNumber = 0; recordNumber < count; recordNumber++)
+      {
+         readRecord(recordNumber, record);
+         result.add(codec.decode(recordNumber, record, 0));
+      }
+
+      return result;
+   }
+
+   String[] read(int recordNumber) throws RecordNotFoundException
+   {
+      checkRowExists(recordNumber);
+
+      ByteBuffer record = ByteBuffer.allocate(codec.getSizeOfRecord());
+      readRecord(recordNumber, record);
+
+      return codec.decodeData(record, 0);
+   }
+
+   public int create(String[] content)
+   {
+      int freeRecord = freeSlots.claim();
+      if (freeRecord != FreeSlots.NONE)
+      {
+         ReadWriteLock slotLock = slotLockFor(freeRecord);
+         slotLock.writeLock().lock();
+         try
+         {
+            writeFully(codec.encode(content), positionOf(freeRecord));
+            return freeRecord;
+         } finally
+         {
+            slotLock.writeLock().unlock();
+         }
+      }
+
+      appendLock.lock();
+      try
+      {
+         int recordNumber = rowCount;
+         writeFully(codec.encode(content), positionOf(recordNumber));
+         rowCount = recordNumber + 1;
+
+         return recordNumber;
+      } finally
+      {
+         appendLock.unlock();
+      }
+   }
+
+   public void update(int recordNumber, String[] content) throws RecordNotFoundException
+   {
+      checkRowExists(recordNumber);
+
+      ReadWriteLock slotLock = slotLockFor(recordNumber);
+      slotLock.writeLock().lock();
+      try
+      {
+         if (isDeleted(recordNumber))
+            throw new RecordNotFoundException("Record has been deleted: " + recordNumber);
+
+         writeFully(codec.encode(content), positionOf(recordNumber));
+      } finally
+      {
+         slotLock.writeLock().unlock();
+      }
+   }
+
+   public void delete(int recordNumber) throws RecordNotFoundException
+   {
+      checkRowExists(recordNumber);
+
+      ReadWriteLock slotLock = slotLockFor(recordNumber);
+      slotLock.writeLock().lock();
+      try
+      {
+         writeFully(ByteBuffer.wrap(new byte[]{LogicalDelete.DELETED.getValue()}), positionOf(recordNumber));
+         freeSlots.release(recordNumber);
+      } finally
+      {
+         slotLock.writeLock().unlock();
+      }
+   }
+
+   private boolean isDeleted(int recordNumber)
+   {
+      ByteBuffer flag = ByteBuffer.allocate(LogicalDelete.getSizeOfDeletedFlag());
+      readFully(flag, positionOf(recordNumber));
+
+      return codec.isDeleted(flag, 0);
+   }
+
+   private void readRecord(int recordNumber, ByteBuffer record)
+   {
+      ReadWriteLock slotLock = slotLockFor(recordNumber);
+      slotLock.readLock().lock();
+      try
+      {
+         record.clear();
+         readFully(record, positionOf(recordNumber));
+      } finally
+      {
+         slotLock.readLock().unlock();
+      }
+   }
+
+   private void readFully(ByteBuffer buffer, long position)
+   {
+      try
+      {
+         while (buffer.hasRemaining())
+         {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+               throw new DatabaseException("Unexpected end of file at: " + position, null);
+
+            position += read;
+         }
+      } catch (IOException e)
+      {
+         throw new DatabaseException("Cannot read from disk: " + e.getMessage(), e);
+      }
+   }
+
+   private void writeFully(ByteBuffer buffer, long position)
+   {
+      try
+      {
+         while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+      } catch (IOException e)
+      {
+         throw new DatabaseException("Cannot write to disk: " + e.getMessage(), e);
+      }
+   }
+
+   private ReadWriteLock slotLockFor(int recordNumber)
+   {
+      return slotLocks[recordNumber % slotLocks.length];
+   }
+
+   private long positionOf(int recordNumber)
+   {
+      return metaData.getDataStartPointer() + (long) recordNumber * codec.getSizeOfRecord();
+   }
+
+   private void checkRowExists(int recordNumber) throws RecordNotFoundException
+   {
+      if (recordNumber < 0 || recordNumber >= rowCount)
+         throw new RecordNotFoundException("RecordNumber is too large: " + recordNumber);
+   }
+}
@@ -0,0 +1,68 @@
+package suncertify.db.file.reader;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+class FreeSlots
+{
+   static final int NONE = -1;
+
+   private final BitSet deleted = new BitSet();
+   private int[] stack = new int[16];
+   private int size = 0;
+   private final Lock lock = new ReentrantLock();
+
+   void release(int recordNumber)
+   {
+      lock.lock();
+      try
+      {
+         if (deleted.get(recordNumber))
+            return;
+
+         deleted.set(recordNumber);
+
+         if (size == stack.length)
+         {
+            int[] larger = new int[stack.length * 2];
+            System.arraycopy(stack, 0, larger, 0, size);
+            stack = larger;
+         }
+         stack[size++] = recordNumber;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   int claim()
+   {
+      lock.lock();
+      try
+      {
+         if (size == 0)
+            return NONE;
+
+         int recordNumber = stack[--size];
+         deleted.clear(recordNumber);
+
+         return recordNumber;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+
+   int size()
+   {
+      lock.lock();
+      try
+      {
+         return size;
+      } finally
+      {
+         lock.unlock();
+      }
+   }
+}
@@ -0,0 +1,199 @@
+package suncertify.db.file.reader;
+
+import suncertify.db.DatabaseException;
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.file.meta.LogicalDelete;
+import suncertify.db.file.meta.MetaData;
+import suncertify.db.file.meta.MetaDataReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+public class MappedFileDatabaseReader implements FileDatabaseReader
+{
+   private static final Logger log = Logger.getLogger(MappedFileDatabaseReader.class.getName());
+
+   private static final int GROWTH_IN_ROWS = 64;
+
+   private MetaData metaData;
+   private RecordCodec codec;
+   private FileChannel channel;
+
+   private final ReadWriteLock mappingLock = new ReentrantReadWriteLock();
+   private MappedByteBuffer rows;   // covers exactly the data region, remapped only when create grows the file
+   private final FreeSlots freeSlots = new FreeSlots();
+
+   public MappedFileDatabaseReader(File file) throws FileNotFoundException, DatabaseException
+   {
+      log.info("MappedFileDatabaseReader created using : " + file.getAbsolutePath());
+
+      RandomAccessFile database = new RandomAccessFile(file, "rw");
+      metaData = new MetaDataReader().setup(database);
+      codec = new RecordCodec(metaData);
+      channel = database.getChannel();
+
+      remap();
+
+      for (int recordNumber = getInternalRowCount() - 1; recordNumber >= 0; recordNumber--)   // the lowest is claimed first
+         if (codec.isDeleted(rows, offsetOf(recordNumber)))
+            freeSlots.release(recordNumber);
+   }
+
+   public List<DatabaseRow> readAll()
+   {
+      mappingLock.readLock().lock();
+      try
+      {
+         int rowCount = getInternalRowCount();
+         List<DatabaseRow> result = new ArrayList<DatabaseRow>(rowCount);
+
+         for (int recordNumber = 0; recordNumber < rowCount; recordNumber++)
+            result.add(codec.decode(recordNumber, rows, offsetOf(recordNumber)));
+
+         return result;
+      } finally
+      {
+         mappingLock.readLock().unlock();
+      }
+   }
+
+   String[] read(int recordNumber) throws RecordNotFoundException
+   {
+      mappingLock.readLock().lock();
+      try
+      {
+         checkRowExists(recordNumber);
+         return codec.decodeData(rows, offsetOf(recordNumber));
+      } finally
+      {
+         mappingLock.readLock().unlock();
+      }
+   }
+
+   public int create(String[] content)
+   {
+      mappingLock.writeLock().lock();
+      try
+      {
+         int recordNumber = freeSlots.claim();
+         if (recordNumber == FreeSlots.NONE)
+         {
+            grow();
+            recordNumber = freeSlots.claim();
+         }
+
+         writeRecord(recordNumber, codec.encode(content));
+         return recordNumber;
+      } finally
+      {
+         mappingLock.writeLock().unlock();
+      }
+   }
+
+   public void update(int recordNumber, String[] content) throws RecordNotFoundException
+   {
+      mappingLock.writeLock().lock();
+      try
+      {
+         checkRowExists(recordNumber);
+         if (codec.isDeleted(rows, offsetOf(recordNumber)))
+            throw new RecordNotFoundException("Record has been deleted: " + recordNumber);
+
+         writeRecord(recordNumber, codec.encode(content));
+      } finally
+      {
+         mappingLock.writeLock().unlock();
+      }
+   }
+
+   public void delete(int recordNumber) throws RecordNotFoundException
+   {
+      mappingLock.writeLock().lock();
+      try
+      {
+         checkRowExists(recordNumber);
+         rows.put(offsetOf(recordNumber), LogicalDelete.DELETED.getValue());
+         freeSlots.release(recordNumber);
+      } finally
+      {
+         mappingLock.writeLock().unlock();
+      }
+   }
+
+   private void writeRecord(int recordNumber, ByteBuffer record)
+   {
+      ByteBuffer target = rows.duplicate();
+      target.position(offsetOf(recordNumber));
+      target.put(record);
+   }
+
+   // appends a chunk of deleted rows, so other readers of the file skip them and creates fill them without a remap
+   private void grow()
+   {
+      int rowCount = getInternalRowCount();
+
+      ByteBuffer deletedRow = codec.encode(new String[0]);
+      deletedRow.put(0, LogicalDelete.DELETED.getValue());
+
+      ByteBuffer chunk = ByteBuffer.allocate(GROWTH_IN_ROWS * codec.getSizeOfRecord());
+      for (int i = 0; i < GROWTH_IN_ROWS; i++)
+         chunk.put(deletedRow.duplicate());
+      chunk.flip();
+
+      try
+      {
+         long position = metaData.getDataStartPointer() + (long) rowCount * codec.getSizeOfRecord();
+         while (chunk.hasRemaining())
+            position += channel.write(chunk, position);
+      } catch (IOException e)
+      {
+         throw new DatabaseException("Cannot write to disk: " + e.getMessage(), e);
+      }
+
+      remap();
+
+      for (int recordNumber = rowCount + GROWTH_IN_ROWS - 1; recordNumber >= rowCount; recordNumber--)
+         freeSlots.release(recordNumber);
+   }
+
+   private void remap()
+   {
+      try
+      {
+         long sizeWithoutHeading = channel.size() - metaData.getDataStartPointer();
+         long usableSize = sizeWithoutHeading - (sizeWithoutHeading % metaData.getSizeOfRecord());
+
+         rows = channel.map(FileChannel.MapMode.READ_WRITE, metaData.getDataStartPointer(), usableSize);
+      } catch (IOException e)
+      {
+         throw new DatabaseException("Cannot map database file: " + e.getMessage(), e);
+      }
+   }
+
+   private int getInternalRowCount()
+   {
+      return rows.capacity() / codec.getSizeOfRecord();
+   }
+
+   private int offsetOf(int recordNumber)
+   {
+      return recordNumber * codec.getSizeOfRecord();
+   }
+
+   private void checkRowExists(int recordNumber) throws RecordNotFoundException
+   {
+      if (recordNumber < 0 || recordNumber >= getInternalRowCount())
+         throw new RecordNotFoundException("RecordNumber is too large: " + recordNumber);
+   }
+}
@@ -0,0 +1,84 @@
+package suncertify.db.file.reader;
+
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.file.meta.LogicalDelete;
+import suncertify.db.file.meta.MetaData;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+class RecordCodec
+{
+   private static final byte PADDING = (byte) ' ';
+
+   private final int sizeOfRecord;
+   private final short[] fieldSizes;
+   private final short largestField;
+
+   RecordCodec(MetaData metaData)
+   {
+      sizeOfRecord = metaData.getSizeOfRecord();
+
+      List<Short> sizes = metaData.getFieldSizes();
+      fieldSizes = new short[sizes.size()];
+      short largest = 0;
+      for (int i = 0; i < fieldSizes.length; i++)
+      {
+         fieldSizes[i] = sizes.get(i);
+         largest = (short) Math.max(largest, fieldSizes[i]);
+      }
+      largestField = largest;
+   }
+
+   int getSizeOfRecord()
+   {
+      return sizeOfRecord;
+   }
+
+   boolean isDeleted(ByteBuffer buffer, int offset)
+   {
+      return LogicalDelete.isDeleted(buffer.get(offset));
+   }
+
+   DatabaseRow decode(int recordNumber, ByteBuffer buffer, int offset)
+   {
+      return new DatabaseRow(recordNumber, isDeleted(buffer, offset), decodeData(buffer, offset));
+   }
+
+   String[] decodeData(ByteBuffer buffer, int offset)
+   {
+      String[] result = new String[fieldSizes.length];
+      byte[] bytes = new byte[largestField];
+
+      int position = offset + LogicalDelete.getSizeOfDeletedFlag();
+      for (int field = 0; field < fieldSizes.length; field++)
+      {
+         for (int i = 0; i < fieldSizes[field]; i++)
+            bytes[i] = buffer.get(position + i);
+
+         result[field] = new String(bytes, 0, fieldSizes[field]).trim();
+         position += fieldSizes[field];
+      }
+
+      return result;
+   }
+
+   ByteBuffer encode(String[] content)
+   {
+      ByteBuffer result = ByteBuffer.allocate(sizeOfRecord);
+      result.put(LogicalDelete.VALID.getValue());
+
+      for (int field = 0; field < fieldSizes.length; field++)
+      {
+         byte[] bytes = field < content.length ? content[field].getBytes() : new byte[0];
+         int length = Math.min(bytes.length, fieldSizes[field]);   // never spill into the next column
+
+         result.put(bytes, 0, length);
+         for (int i = length; i < fieldSizes[field]; i++)
+            result.put(PADDING);
+      }
+
+      result.flip();
+      return result;
+   }
+}
@@ -8,23 +8,30 @@ import suncertify.db.file.meta.MetaData;
 import suncertify.db.file.meta.MetaDataReader;
 import suncertify.lang.ByteStreamUtils;
 import suncertify.lang.CollectionToArray;
-import suncertify.lang.StringUtils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 public class SimpleFileDatabaseReader implements FileDatabaseReader
 {
    private static final Logger log = Logger.getLogger(SimpleFileDatabaseReader.class.getName());
 
+   private static final int BULK_READ_SIZE = 256 * 1024;
+
    private MetaData metaData;
+   private RecordCodec codec;
    private RandomAccessFile database;
+   private final FreeSlots freeSlots = new FreeSlots();
+   private final Lock fileLock = new ReentrantLock();   // guards the shared file pointer
 
    public SimpleFileDatabaseReader(File file) throws FileNotFoundException, DatabaseException
    {
@@ -32,100 +39,152 @@ public class SimpleFileDatabaseReader implements FileDatabaseReader
 
       database = new RandomAccessFile(file, "rw");
       metaData = new MetaDataReader().setup(database);
+      codec = new RecordCodec(metaData);
+
+      for (DatabaseRow databaseRow : readAll())
+         if (!databaseRow.isValid())
+            freeSlots.release(databaseRow.getId());
    }
 
-   public synchronized List<DatabaseRow> readAll()
+   public List<DatabaseRow> readAll()
    {
-      List<DatabaseRow> result = new ArrayList<DatabaseRow>();
-
-      for (int recordNumber = 0; recordNumber < getInternalRowCount(); recordNumber++)
+      fileLock.lock();
+      try
       {
+         int rowCount = getInternalRowCount();
+         List<DatabaseRow> result = new ArrayList<DatabaseRow>(rowCount);
+
+         int recordsPerChunk = Math.max(1, BULK_READ_SIZE / codec.getSizeOfRecord());
+         byte[] chunk = new byte[recordsPerChunk * codec.getSizeOfRecord()];
+         ByteBuffer buffer = ByteBuffer.wrap(chunk);
+
          try
          {
-            result.add(new DatabaseRow(recordNumber, isDeleted(recordNumber), read(recordNumber)));
-         } catch (RecordNotFoundException e)
+            database.seek(metaData.getDataStartPointer());
+
+            for (int firstRecord = 0; firstRecord < rowCount; firstRecord += recordsPerChunk)
+            {
+               int recordsInChunk = Math.min(recordsPerChunk, rowCount - firstRecord);
+               database.readFully(chunk, 0, recordsInChunk * codec.getSizeOfRecord());
+
+               for (int i = 0; i < recordsInChunk; i++)
+                  result.add(codec.decode(firstRecord + i, buffer, i * codec.getSizeOfRecord()));
+            }
+         } catch (IOException e)
          {
-            throw new DatabaseException("Cannot read expected row: " + e.getMessage(), e);
+            throw new DatabaseException("Cannot read rows: " + e.getMessage(), e);
          }
-      }
 
-      return result;
+         return result;
+      } finally
+      {
+         fileLock.unlock();
+      }
    }
 
-   synchronized String[] read(int recordNumber) throws RecordNotFoundException
+   String[] read(int recordNumber) throws RecordNotFoundException
    {
-      List<String> result = new ArrayList<String>();
+      fileLock.lock();
+      try
+      {
+         List<String> result = new ArrayList<String>();
 
-      moveToRow(recordNumber);
+         moveToRow(recordNumber);
 
-      currentRowIsDeleted();
-//    if (currentRowIsDeleted())
-//      throw new RecordNotFoundException("Record has been deleted: " + recordNumber);
+         currentRowIsDeleted();
+//       if (currentRowIsDeleted())
+//         throw new RecordNotFoundException("Record has been deleted: " + recordNumber);
 
-      Map<String, Short> columns = metaData.getColumns();
-      for (String column : columns.keySet())
-      {
-         try
+         Map<String, Short> columns = metaData.getColumns();
+         for (String column : columns.keySet())
          {
-            result.add(ByteStreamUtils.readStringOfSize(database, columns.get(column)).trim());
-         } catch (IOException e)
-         {
-            throw new DatabaseException("Cannot read column: " + column + " because: " + e.getMessage(), e);
+            try
+            {
+               result.add(ByteStreamUtils.readStringOfSize(database, columns.get(column)).trim());
+            } catch (IOException e)
+            {
+               throw new DatabaseException("Cannot read column: " + column + " because: " + e.getMessage(), e);
+            }
          }
-      }
 
-      return CollectionToArray.convert(result);
+         return CollectionToArray.convert(result);
+      } finally
+      {
+         fileLock.unlock();
+      }
    }
 
-   public synchronized int create(String[] content)
+   public int create(String[] content)
    {
+      fileLock.lock();
       try
       {
-         database.seek(database.length());
+         int recordNumber = freeSlots.claim();
+         if (recordNumber == FreeSlots.NONE)
+            recordNumber = getInternalRowCount();
+
+         try
+         {
+            moveToRow(recordNumber);
+         } catch (RecordNotFoundException e)
+         {
+            throw new DatabaseException("Cannot move to free row: " + e.getMessage(), e);
+         }
          persist(content);
 
-         return getInternalRowCount();
-      } catch (IOException e)
+         return recordNumber;
+      } finally
       {
-         throw new DatabaseException("Cannot move to end of file: " + e.getMessage(), e);
+         fileLock.unlock();
       }
    }
 
-   public synchronized void update(int recordNumber, String[] content) throws RecordNotFoundException
+   public void update(int recordNumber, String[] content) throws RecordNotFoundException
    {
-      if (isDeleted(recordNumber))
-         throw new RecordNotFoundException("Record has been deleted: " + recordNumber);
+      fileLock.lock();
+      try
+      {
+         if (isDeleted(recordNumber))
+            throw new RecordNotFoundException("Record has been deleted: " + recordNumber);
 
-      moveToRow(recordNumber);
-      persist(content);
+         moveToRow(recordNumber);
+         persist(content);
+      } finally
+      {
+         fileLock.unlock();
+      }
    }
 
    private void persist(String[] content)
    {
+      ByteBuffer record = codec.encode(content);   // the whole row, as rows in the middle of the file are reused
+
       try
       {
-         database.write(LogicalDelete.VALID.getValue());
-
-         List<Short> fieldSizes = metaData.getFieldSizes();
-
-         for (int i = 0; i < content.length; i++)
-            database.write(StringUtils.padRight(content[i], fieldSizes.get(i)).getBytes());
-
+         database.write(record.array(), 0, record.limit());
       } catch (IOException e)
       {
          throw new DatabaseException("Cannot write to disk: " + e.getMessage(), e);
       }
    }
 
-   public synchronized void delete(int recordNumber) throws RecordNotFoundException
+   public void delete(int recordNumber) throws RecordNotFoundException
    {
-      moveToRow(recordNumber);
+      fileLock.lock();
       try
       {
-         database.write(LogicalDelete.DELETED.getValue());
-      } catch (IOException e)
+         moveToRow(recordNumber);
+         try
+         {
+            database.write(LogicalDelete.DELETED.getValue());
+            freeSlots.release(recordNumber);
+         } catch (IOException e)
+         {
+            throw new DatabaseException("Cannot delete row: " + e.getMessage(), e);
+         }
+      } finally
       {
-         throw new DatabaseException("Cannot delete row: " + e.getMessage(), e);
+         fileLock.unlock();
       }
    }
 
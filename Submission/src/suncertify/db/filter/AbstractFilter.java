@@ -2,44 +2,93 @@ package suncertify.db.filter;
 
 import suncertify.db.file.meta.DatabaseRow;
 import suncertify.lang.filters.Filter;
+import suncertify.lang.filters.Plan;
 
 public abstract class AbstractFilter implements Filter<DatabaseRow>
 {
   public boolean accepts(String[] criteria, DatabaseRow databaseRow, SearchType type)
   {
-    if (databaseRow.getData().length != criteria.length)
-      return false;
+    return compile(criteria, type).accepts(databaseRow);
+  }
 
-    if (areAllCriteriaNull(criteria))
-      return true;
+  public Plan<DatabaseRow> compile(String[] criteria, SearchType type)
+  {
+    if (!SearchType.OR.equals(type) && !SearchType.AND.equals(type))
+      throw new UnsupportedOperationException("Only supports ANY/ALL ");
 
-    if (SearchType.OR.equals(type))
-    {
-      for (int i = 0; i < criteria.length; i++)
-        if (criteria[i] != null && performTest(criteria, databaseRow, i))
-          return true;
+    boolean all = SearchType.AND.equals(type);
+    String[] prepared = criteria.clone();
+    int[] columns = searchedColumns(criteria);
 
-      return false;
-    } else if (SearchType.AND.equals(type))
-    {
-      for (int i = 0; i < criteria.length; i++)
-        if (criteria[i] != null && !performTest(criteria, databaseRow, i))
-          return false;
+    // longest criteria first: for ALL they reject the most rows, for ANY the shortest are most likely to accept
+    for (int i = 1; i < columns.length; i++)
+      for (int j = i; j > 0 && comesBefore(prepared[columns[j]], prepared[columns[j - 1]], all); j--)
+      {
+        int swap = columns[j];
+        columns[j] = columns[j - 1];
+        columns[j - 1] = swap;
+      }
 
-      return true;
-    }
-
-    throw new UnsupportedOperationException("Only supports ANY/ALL ");
+    return new ColumnPlan(criteria.length, columns, prepared, all);
   }
 
-  protected abstract boolean performTest(String[] criteria, DatabaseRow databaseRow, int index);
+  protected abstract boolean performTest(String field, String criterion);
 
-  protected boolean areAllCriteriaNull(String[] criteria)
+  private int[] searchedColumns(String[] criteria)
   {
+    int count = 0;
     for (String term : criteria)
       if (term != null)
+        count++;
+
+    int[] columns = new int[count];
+    count = 0;
+    for (int i = 0; i < criteria.length; i++)
+      if (criteria[i] != null)
+        columns[count++] = i;
+
+    return columns;
+  }
+
+  private boolean comesBefore(String first, String second, boolean all)
+  {
+    return all ? first.length() > second.length() : first.length() < second.length();
+  }
+
+  private class ColumnPlan implements Plan<DatabaseRow>
+  {
+    private final int numberOfColumns;
+    private final int[] columns;
+    private final String[] criteria;
+    private final boolean all;
+
+    private ColumnPlan(int numberOfColumns, int[] columns, String[] criteria, boolean all)
+    {
+      this.numberOfColumns = numberOfColumns;
+      this.columns = columns;
+      this.criteria = criteria;
+      this.all = all;
+    }
+
+    public boolean accepts(DatabaseRow databaseRow)
+    {
+      String[] data = databaseRow.getData();
+      if (data.length != numberOfColumns)
         return false;
 
-    return true;
+      if (columns.length == 0)
+        return true;
+
+      for (int column : columns)
+        if (performTest(data[column], criteria[column]) != all)
+          return !all;
+
+      return all;
+    }
+
+    public int getCost()
+    {
+      return columns.length;
+    }
   }
 }
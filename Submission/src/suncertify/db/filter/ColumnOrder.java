@@ -0,0 +1,24 @@
+package suncertify.db.filter;
+
+import suncertify.db.file.meta.DatabaseRow;
+
+import java.util.Comparator;
+
+public class ColumnOrder implements Comparator<DatabaseRow>
+{
+  private final int column;
+
+  public ColumnOrder(int column)
+  {
+    this.column = column;
+  }
+
+  public int compare(DatabaseRow first, DatabaseRow second)
+  {
+    int result = String.CASE_INSENSITIVE_ORDER.compare(first.getData()[column], second.getData()[column]);
+    if (result != 0)
+      return result;
+
+    return first.getId() < second.getId() ? -1 : (first.getId() == second.getId() ? 0 : 1);   // equal values stay in record order
+  }
+}
@@ -0,0 +1,47 @@
+package suncertify.db.filter;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+public enum ColumnType
+{
+  CENTS   // "$210.00"
+  {
+    public long parse(String value)
+    {
+      String amount = value.trim().replace("$", "").replace(",", "");
+      boolean negative = amount.startsWith("-");
+      if (negative)
+        amount = amount.substring(1);
+
+      int point = amount.indexOf('.');
+      String dollars = point < 0 ? amount : amount.substring(0, point);
+      String cents = point < 0 ? "" : amount.substring(point + 1);
+      if (!dollars.matches("[0-9]+") || !cents.matches("[0-9]{0,2}"))   // a fraction of a cent is not rounded away
+        throw new IllegalArgumentException("Not an amount in dollars and cents: " + value);
+
+      long parsed = Long.parseLong(dollars) * 100 + Long.parseLong((cents + "00").substring(0, 2));
+      return negative ? -parsed : parsed;
+    }
+  },
+
+  EPOCH_DAY   // "2005/03/23"
+  {
+    public long parse(String value)
+    {
+      String[] parts = value.trim().split("/");
+      if (parts.length != 3)
+        throw new IllegalArgumentException("Not a yyyy/mm/dd date: " + value);
+
+      try
+      {
+        return LocalDate.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])).toEpochDay();
+      } catch (DateTimeException e)
+      {
+        throw new IllegalArgumentException("Not a valid date: " + value, e);
+      }
+    }
+  };
+
+  public abstract long parse(String value);
+}
@@ -0,0 +1,252 @@
+package suncertify.db.filter;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class QueryCache
+{
+  public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+  private static final int ENTRY_OVERHEAD = 128;   // rough size of the key, entry and array headers
+
+  private final long maxBytes;
+  private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);   // least recently used first
+  private final Lock lock = new ReentrantLock();
+
+  private long bytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long invalidations = 0;
+  private long evictions = 0;
+
+  public QueryCache()
+  {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  public QueryCache(long maxBytes)
+  {
+    this.maxBytes = maxBytes;
+  }
+
+  public int[] get(String[] criteria, SearchType type, long writeVersion)
+  {
+    lock.lock();
+    try
+    {
+      int[] result = lookup(new Key(criteria, type), writeVersion);
+      if (result == null)
+        misses++;
+
+      return result;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  // as get, but a caller that goes on without the result, rather than filling it in, is not counted as a miss
+  public int[] peek(String[] criteria, SearchType type, long writeVersion)
+  {
+    lock.lock();
+    try
+    {
+      return lookup(new Key(criteria, type), writeVersion);
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public void put(String[] criteria, SearchType type, long writeVersion, int[] result)
+  {
+    Key key = new Key(criteria.clone(), type);
+    Entry entry = new Entry(writeVersion, result.clone(), sizeOf(criteria, result));
+    if (entry.bytes > maxBytes)
+      return;
+
+    lock.lock();
+    try
+    {
+      Entry previous = entries.put(key, entry);
+      if (previous != null)
+        bytes -= previous.bytes;
+      bytes += entry.bytes;
+
+      Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+      while (bytes > maxBytes && eldest.hasNext())
+      {
+        bytes -= eldest.next().getValue().bytes;
+        eldest.remove();
+        evictions++;
+      }
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public void clear()
+  {
+    lock.lock();
+    try
+    {
+      entries.clear();
+      bytes = 0;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public long getHits()
+  {
+    lock.lock();
+    try
+    {
+      return hits;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public long getMisses()
+  {
+    lock.lock();
+    try
+    {
+      return misses;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public long getInvalidations()
+  {
+    lock.lock();
+    try
+    {
+      return invalidations;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public long getEvictions()
+  {
+    lock.lock();
+    try
+    {
+      return evictions;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public long getBytes()
+  {
+    lock.lock();
+    try
+    {
+      return bytes;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public int size()
+  {
+    lock.lock();
+    try
+    {
+      return entries.size();
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  private int[] lookup(Key key, long writeVersion)
+  {
+    Entry entry = entries.get(key);
+    if (entry == null)
+      return null;
+
+    if (entry.writeVersion != writeVersion)
+    {
+      remove(key, entry);
+      invalidations++;
+      return null;
+    }
+
+    hits++;
+    return entry.result.clone();
+  }
+
+  private void remove(Key key, Entry entry)
+  {
+    entries.remove(key);
+    bytes -= entry.bytes;
+  }
+
+  private static long sizeOf(String[] criteria, int[] result)
+  {
+    long size = ENTRY_OVERHEAD + 4L * result.length + 8L * criteria.length;
+    for (String criterion : criteria)
+      if (criterion != null)
+        size += 2L * criterion.length();
+
+    return size;
+  }
+
+  private static class Key
+  {
+    private final String[] criteria;
+    private final SearchType type;
+    private final int hash;
+
+    private Key(String[] criteria, SearchType type)
+    {
+      this.criteria = criteria;
+      this.type = type;
+      this.hash = 31 * Arrays.hashCode(criteria) + type.hashCode();
+    }
+
+    public boolean equals(Object other)
+    {
+      if (!(other instanceof Key))
+        return false;
+
+      Key key = (Key) other;
+      return type == key.type && Arrays.equals(criteria, key.criteria);
+    }
+
+    public int hashCode()
+    {
+      return hash;
+    }
+  }
+
+  private static class Entry
+  {
+    private final long writeVersion;
+    private final int[] result;
+    private final long bytes;
+
+    private Entry(long writeVersion, int[] result, long bytes)
+    {
+      this.writeVersion = writeVersion;
+      this.result = result;
+      this.bytes = bytes;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package suncertify.db.filter;
+
+public class Range
+{
+  private final int column;
+  private final long min;
+  private final long max;
+
+  public Range(int column, long min, long max)
+  {
+    this.column = column;
+    this.min = min;
+    this.max = max;
+  }
+
+  public static Range below(int column, long value)
+  {
+    if (value == Long.MIN_VALUE)
+      return new Range(column, Long.MAX_VALUE, Long.MIN_VALUE);   // nothing is below it
+
+    return new Range(column, Long.MIN_VALUE, value - 1);
+  }
+
+  public static Range atLeast(int column, long value)
+  {
+    return new Range(column, value, Long.MAX_VALUE);
+  }
+
+  public static Range between(int column, long from, long to)
+  {
+    return new Range(column, from, to);
+  }
+
+  public int getColumn()
+  {
+    return column;
+  }
+
+  public long getMin()
+  {
+    return min;
+  }
+
+  public long getMax()
+  {
+    return max;
+  }
+}
@@ -0,0 +1,213 @@
+package suncertify.db.filter;
+
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.lang.IntBuffer;
+import suncertify.lang.filters.Plan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+public class RecordSearch
+{
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 20000;
+
+  private static final int LEAVES_PER_THREAD = 4;
+
+  private final ForkJoinPool pool;
+  private final int parallelThreshold;
+
+  public RecordSearch()
+  {
+    this(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  public RecordSearch(ForkJoinPool pool, int parallelThreshold)
+  {
+    this.pool = pool;
+    this.parallelThreshold = parallelThreshold;
+  }
+
+  public int[] find(Plan<DatabaseRow> plan, List<DatabaseRow> rows)
+  {
+    return search(plan, rows, IDS).toArray();
+  }
+
+  public List<DatabaseRow> findRows(Plan<DatabaseRow> plan, List<DatabaseRow> rows)
+  {
+    return search(plan, rows, ROWS);
+  }
+
+  public List<DatabaseRow> findPage(Plan<DatabaseRow> plan, List<DatabaseRow> rows, int offset, int limit)
+  {
+    checkPage(offset, limit);
+
+    List<DatabaseRow> page = new ArrayList<DatabaseRow>(Math.min(limit, rows.size()));
+    int skipped = 0;
+    for (DatabaseRow databaseRow : rows)
+    {
+      if (page.size() == limit)
+        break;   // the rest of the table is never looked at
+
+      if (!plan.accepts(databaseRow))
+        continue;
+
+      if (skipped < offset)
+        skipped++;
+      else
+        page.add(databaseRow);
+    }
+
+    return page;
+  }
+
+  public List<DatabaseRow> findTop(Plan<DatabaseRow> plan, List<DatabaseRow> rows, Comparator<DatabaseRow> order, int offset, int limit)
+  {
+    checkPage(offset, limit);
+
+    int wanted = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+    if (wanted == 0)
+      return new ArrayList<DatabaseRow>();
+
+    // keeps only the best rows seen so far, with the worst of them on top ready to be pushed out
+    PriorityQueue<DatabaseRow> best = new PriorityQueue<DatabaseRow>(Math.min(wanted, 1024), Collections.reverseOrder(order));
+    for (DatabaseRow databaseRow : rows)
+    {
+      if (!plan.accepts(databaseRow))
+        continue;
+
+      if (best.size() < wanted)
+        best.add(databaseRow);
+      else if (order.compare(databaseRow, best.peek()) < 0)
+      {
+        best.poll();
+        best.add(databaseRow);
+      }
+    }
+
+    DatabaseRow[] sorted = best.toArray(new DatabaseRow[best.size()]);
+    Arrays.sort(sorted, order);
+
+    List<DatabaseRow> page = new ArrayList<DatabaseRow>(Math.max(0, sorted.length - offset));
+    for (int i = offset; i < sorted.length; i++)
+      page.add(sorted[i]);
+
+    return page;
+  }
+
+  private void checkPage(int offset, int limit)
+  {
+    if (offset < 0 || limit < 0)
+      throw new IllegalArgumentException("Offset and limit cannot be negative: " + offset + ", " + limit);
+  }
+
+  private <R> R search(Plan<DatabaseRow> plan, List<DatabaseRow> rows, Accumulator<R> accumulator)
+  {
+    if (rows.size() < parallelThreshold || pool.getParallelism() < 2)
+      return collect(plan, rows.spliterator(), accumulator);
+
+    long leafSize = Math.max(1, rows.size() / (pool.getParallelism() * LEAVES_PER_THREAD));
+    return pool.invoke(new Search<R>(plan, rows.spliterator(), accumulator, leafSize));
+  }
+
+  private static <R> R collect(final Plan<DatabaseRow> plan, Spliterator<DatabaseRow> rows, final Accumulator<R> accumulator)
+  {
+    final R result = accumulator.create();
+    rows.forEachRemaining(new Consumer<DatabaseRow>()
+    {
+      public void accept(DatabaseRow databaseRow)
+      {
+        if (plan.accepts(databaseRow))
+          accumulator.add(result, databaseRow);
+      }
+    });
+
+    return result;
+  }
+
+  private interface Accumulator<R>
+  {
+    R create();
+
+    void add(R result, DatabaseRow databaseRow);
+
+    void addAll(R result, R later);
+  }
+
+  private static final Accumulator<IntBuffer> IDS = new Accumulator<IntBuffer>()
+  {
+    public IntBuffer create()
+    {
+      return new IntBuffer();
+    }
+
+    public void add(IntBuffer result, DatabaseRow databaseRow)
+    {
+      result.add(databaseRow.getId());
+    }
+
+    public void addAll(IntBuffer result, IntBuffer later)
+    {
+      result.addAll(later);
+    }
+  };
+
+  private static final Accumulator<List<DatabaseRow>> ROWS = new Accumulator<List<DatabaseRow>>()
+  {
+    public List<DatabaseRow> create()
+    {
+      return new ArrayList<DatabaseRow>();
+    }
+
+    public void add(List<DatabaseRow> result, DatabaseRow databaseRow)
+    {
+      result.add(databaseRow);
+    }
+
+    public void addAll(List<DatabaseRow> result, List<DatabaseRow> later)
+    {
+      result.addAll(later);
+    }
+  };
+
+  private static class Search<R> extends RecursiveTask<R>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Plan<DatabaseRow> plan;
+    private final Spliterator<DatabaseRow> rows;
+    private final Accumulator<R> accumulator;
+    private final long leafSize;
+
+    private Search(Plan<DatabaseRow> plan, Spliterator<DatabaseRow> rows, Accumulator<R> accumulator, long leafSize)
+    {
+      this.plan = plan;
+      this.rows = rows;
+      this.accumulator = accumulator;
+      this.leafSize = leafSize;
+    }
+
+    protected R compute()
+    {
+      Spliterator<DatabaseRow> front;
+      if (rows.estimateSize() <= leafSize || (front = rows.trySplit()) == null)
+        return collect(plan, rows, accumulator);
+
+      // the split off part comes first in record order, so its matches go in front
+      Search<R> first = new Search<R>(plan, front, accumulator, leafSize);
+      first.fork();
+      R second = compute();
+
+      R result = first.join();
+      accumulator.addAll(result, second);
+      return result;
+    }
+  }
+}
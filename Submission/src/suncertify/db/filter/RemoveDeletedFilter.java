@@ -2,11 +2,30 @@ package suncertify.db.filter;
 
 import suncertify.db.file.meta.DatabaseRow;
 import suncertify.lang.filters.Filter;
+import suncertify.lang.filters.Plan;
 
 public class RemoveDeletedFilter implements Filter<DatabaseRow>
 {
+  private static final Plan<DatabaseRow> PLAN = new Plan<DatabaseRow>()
+  {
+    public boolean accepts(DatabaseRow databaseRow)
+    {
+      return databaseRow.isValid();
+    }
+
+    public int getCost()
+    {
+      return 0;
+    }
+  };
+
   public boolean accepts(String[] criteria, DatabaseRow databaseRow, SearchType type)
   {
     return databaseRow.isValid();
   }
+
+  public Plan<DatabaseRow> compile(String[] criteria, SearchType type)
+  {
+    return PLAN;
+  }
 }
@@ -1,11 +1,9 @@
 package suncertify.db.filter;
 
-import suncertify.db.file.meta.DatabaseRow;
-
 public class StartsWithFilter extends AbstractFilter
 {
-  protected boolean performTest(String[] criteria, DatabaseRow databaseRow, int index)
+  protected boolean performTest(String field, String criterion)
   {
-    return databaseRow.getData()[index].toLowerCase().startsWith(criteria[index].toLowerCase());
+    return field.regionMatches(true, 0, criterion, 0, criterion.length());   // no lowercased copy per row
   }
 }
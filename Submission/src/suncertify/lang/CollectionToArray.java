@@ -10,14 +10,4 @@ public class CollectionToArray
     input.toArray(result);
     return result;
   }
-
-  public static int[] convert(List<Integer> input)
-  {
-    int[] result = new int[input.size()];
-
-    for (int i = 0; i < input.size(); i++)
-      result[i] = input.get(i);
-
-    return result;
-  }
 }
@@ -0,0 +1,54 @@
+package suncertify.lang;
+
+import java.util.Arrays;
+
+public class IntBuffer
+{
+  private int[] values;
+  private int size = 0;
+
+  public IntBuffer()
+  {
+    this(16);
+  }
+
+  public IntBuffer(int capacity)
+  {
+    values = new int[Math.max(1, capacity)];
+  }
+
+  public void add(int value)
+  {
+    if (size == values.length)
+      values = Arrays.copyOf(values, size * 2);
+
+    values[size++] = value;
+  }
+
+  public void addAll(IntBuffer other)
+  {
+    if (size + other.size > values.length)
+      values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+
+    System.arraycopy(other.values, 0, values, size, other.size);
+    size += other.size;
+  }
+
+  public int get(int index)
+  {
+    if (index >= size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+
+    return values[index];
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public int[] toArray()
+  {
+    return Arrays.copyOf(values, size);
+  }
+}
@@ -11,6 +11,16 @@ public class StringUtils
     return builder.toString();
   }
 
+  // folds case a character at a time, the way String.regionMatches(true, ...) compares, whatever the default locale
+  public static String foldCase(String input)
+  {
+    char[] chars = input.toCharArray();
+    for (int i = 0; i < chars.length; i++)
+      chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+
+    return new String(chars);
+  }
+
   public static String pluralize(int size, String word)
   {
     if (size == 1)
@@ -5,4 +5,6 @@ import suncertify.db.filter.SearchType;
 public interface Filter<T>
 {
   boolean accepts(String[] criteria, T databaseRow, SearchType type);
+
+  Plan<T> compile(String[] criteria, SearchType type);
 }
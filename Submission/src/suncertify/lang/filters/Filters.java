@@ -3,6 +3,8 @@ package suncertify.lang.filters;
 import suncertify.db.filter.SearchType;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 public class Filters<T>
@@ -16,20 +18,60 @@ public class Filters<T>
 
   public List<T> accepts(String[] criteria, List<T> rows, SearchType type)
   {
+    Plan<T> plan = compile(criteria, type);
     List<T> result = new ArrayList<T>();
 
     for (T row : rows)
+      if (plan.accepts(row))
+        result.add(row);
+
+    return result;
+  }
+
+  public Plan<T> compile(String[] criteria, SearchType type)
+  {
+    List<Plan<T>> plans = new ArrayList<Plan<T>>(filters.length);
+    for (Filter<T> filter : filters)
+      plans.add(filter.compile(criteria, type));
+
+    Collections.sort(plans, new Comparator<Plan<T>>()
     {
-      boolean isOk = true;
+      public int compare(Plan<T> first, Plan<T> second)
+      {
+        return first.getCost() - second.getCost();
+      }
+    });
 
-      for (Filter<T> filter : filters)
-        if (!filter.accepts(criteria, row, type))
-          isOk = false;
+    return new AllOf<T>(plans);
+  }
 
-      if (isOk)
-        result.add(row);
+  private static class AllOf<T> implements Plan<T>
+  {
+    private final List<Plan<T>> plans;
+    private final int cost;
+
+    private AllOf(List<Plan<T>> plans)
+    {
+      this.plans = new ArrayList<Plan<T>>(plans);
+
+      int total = 0;
+      for (Plan<T> plan : plans)
+        total += plan.getCost();
+      this.cost = total;
     }
 
-    return result;
+    public boolean accepts(T row)
+    {
+      for (int i = 0; i < plans.size(); i++)   // by index, so no iterator per row
+        if (!plans.get(i).accepts(row))
+          return false;
+
+      return true;
+    }
+
+    public int getCost()
+    {
+      return cost;
+    }
   }
 }
@@ -0,0 +1,8 @@
+package suncertify.lang.filters;
+
+public interface Plan<T>
+{
+  boolean accepts(T row);
+
+  int getCost();   // relative work per row, cheaper plans are run first
+}
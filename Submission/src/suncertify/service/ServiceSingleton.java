@@ -1,7 +1,7 @@
 package suncertify.service;
 
 import suncertify.db.FileData;
-import suncertify.db.RecordNotFoundException;
+import suncertify.db.file.meta.DatabaseRow;
 import suncertify.db.filter.SearchType;
 
 import java.io.File;
@@ -38,18 +38,25 @@ public class ServiceSingleton
 
   public List<String[]> search(String[] keys, SearchType type)
   {
-    List<String[]> result = new ArrayList<String[]>();
+    return toData(data.findRecords(keys, type));
+  }
 
-    for (int key : data.find(keys, type))
-    {
-      try
-      {
-        result.add(data.read(key));
-      } catch (RecordNotFoundException e)
-      {
-        // data must have changed post find
-      }
-    }
+  public List<String[]> search(String[] keys, SearchType type, int offset, int limit)
+  {
+    return toData(data.findRecords(keys, type, offset, limit));
+  }
+
+  public List<String[]> search(String[] keys, SearchType type, int sortColumn, int offset, int limit)
+  {
+    return toData(data.findRecords(keys, type, sortColumn, offset, limit));
+  }
+
+  private List<String[]> toData(List<DatabaseRow> databaseRows)
+  {
+    List<String[]> result = new ArrayList<String[]>(databaseRows.size());
+
+    for (DatabaseRow databaseRow : databaseRows)
+      result.add(databaseRow.getData().clone());
 
     return result;
   }
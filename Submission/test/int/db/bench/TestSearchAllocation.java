@@ -0,0 +1,130 @@
+package db.bench;
+
+import junit.framework.TestCase;
+import suncertify.db.FileData;
+import suncertify.db.file.lock.LockTable;
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.file.reader.MockFileDatabaseReader;
+import suncertify.db.filter.QueryCache;
+import suncertify.db.filter.RecordSearch;
+import suncertify.db.filter.SearchType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class TestSearchAllocation extends TestCase
+{
+  private static final int ROWS_IN_DATABASE = 200000;
+
+  private static final int WARMUP_RUNS = 20;
+
+  private static final int MEASURED_RUNS = 50;
+
+  private MockFileDatabaseReader mockDb;
+  private FileData fileData;
+
+  protected void setUp() throws Exception
+  {
+    mockDb = new MockFileDatabaseReader();
+    for (int i = 0; i < ROWS_IN_DATABASE; i++)
+      mockDb.databaseRows.add(new DatabaseRow(i, i % 10 == 0, new String[]{"Hotel " + (i % 1000), "Town " + (i % 100), "" + (i % 6), i % 2 == 0 ? "Y" : "N", "$150.00", "2005/07/27", ""}));
+
+    // sequential, so every byte is allocated on the measuring thread, and no caching between runs
+    fileData = new FileData(mockDb, new LockTable(), new RecordSearch(ForkJoinPool.commonPool(), Integer.MAX_VALUE), new QueryCache(0));
+  }
+
+  public void testIndexedSearch()
+  {
+    compare("indexed", new String[]{null, null, null, "Y", null, null, null}, SearchType.OR);
+  }
+
+  public void testScannedSearch()
+  {
+    compare("scanned", new String[]{null, null, null, null, null, null, ""}, SearchType.OR);
+  }
+
+  private void compare(String search, final String[] criteria, final SearchType type)
+  {
+    assertTrue(Arrays.equals(boxedFind(criteria, type), fileData.find(criteria, type)));
+
+    Measurement boxed = measure(new Runnable()
+    {
+      public void run()
+      {
+        boxedFind(criteria, type);
+      }
+    });
+    Measurement primitive = measure(new Runnable()
+    {
+      public void run()
+      {
+        fileData.find(criteria, type);
+      }
+    });
+
+    if (boxed.bytes >= 0)
+      assertTrue(search + " boxed: " + boxed + ", primitive: " + primitive, primitive.bytes < boxed.bytes);
+  }
+
+  // the pipeline find used before: a list of matching rows, then a list of boxed ids, then the array
+  private int[] boxedFind(String[] criteria, SearchType type)
+  {
+    List<DatabaseRow> matches = fileData.filtering.accepts(criteria, mockDb.databaseRows, type);
+
+    List<Integer> ids = new ArrayList<Integer>();
+    for (DatabaseRow databaseRow : matches)
+      ids.add(databaseRow.getId());
+
+    int[] result = new int[ids.size()];
+    int i = 0;
+    for (Integer id : ids)
+      result[i++] = id;
+
+    return result;
+  }
+
+  private Measurement measure(Runnable search)
+  {
+    for (int i = 0; i < WARMUP_RUNS; i++)
+      search.run();
+
+    long bytesBefore = allocatedBytes();
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_RUNS; i++)
+      search.run();
+    long nanos = System.nanoTime() - start;
+    long bytesAfter = allocatedBytes();
+
+    return new Measurement(nanos / MEASURED_RUNS, bytesBefore < 0 ? -1 : (bytesAfter - bytesBefore) / MEASURED_RUNS);
+  }
+
+  private long allocatedBytes()
+  {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean))
+      return -1;
+
+    return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static class Measurement
+  {
+    private final long nanos;
+    private final long bytes;
+
+    private Measurement(long nanos, long bytes)
+    {
+      this.nanos = nanos;
+      this.bytes = bytes;
+    }
+
+    public String toString()
+    {
+      return (nanos / 1000) + "us and " + (bytes < 0 ? "unknown" : (bytes / 1024) + "KB") + " per search";
+    }
+  }
+}
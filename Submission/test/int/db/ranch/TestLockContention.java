@@ -0,0 +1,79 @@
+package db.ranch;
+
+import junit.framework.TestCase;
+import suncertify.db.Data;
+import suncertify.db.file.FileUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestLockContention extends TestCase
+{
+   private static final int NO_OF_CLIENTS = 200;
+
+   private static final int NO_OF_HOT_CLIENTS = 8;
+
+   private static final int ROWS_IN_DATABASE = 31;
+
+   private static final int HOT_RECORD = 1;
+
+   private Data data;
+
+   protected void setUp() throws Exception
+   {
+      FileUtils.setupFreshDatabase();
+      data = new Data();
+   }
+
+   public void testHotRecordDoesNotStallOtherRecords() throws Exception
+   {
+      long hotCookie = data.lock(HOT_RECORD);   // held until every other client is done
+
+      AtomicInteger hotFinished = new AtomicInteger();
+      List<Thread> hotClients = startClients(NO_OF_HOT_CLIENTS, true, hotFinished);
+
+      AtomicInteger finished = new AtomicInteger();
+      List<Thread> clients = startClients(NO_OF_CLIENTS, false, finished);
+      for (Thread client : clients)
+         client.join(10000);
+
+      assertEquals("clients of other records were stalled by the hot record", NO_OF_CLIENTS, finished.get());
+      assertEquals(0, hotFinished.get());
+
+      data.unlock(HOT_RECORD, hotCookie);
+      for (Thread client : hotClients)
+         client.join(10000);
+
+      assertEquals(NO_OF_HOT_CLIENTS, hotFinished.get());
+   }
+
+   private List<Thread> startClients(int count, final boolean hot, final AtomicInteger finished)
+   {
+      List<Thread> clients = new ArrayList<Thread>();
+      for (int i = 0; i < count; i++)
+      {
+         final int recordNumber = hot ? HOT_RECORD : 2 + i % (ROWS_IN_DATABASE - 2);
+         Thread client = new Thread()
+         {
+            public void run()
+            {
+               try
+               {
+                  long cookie = data.lock(recordNumber);
+                  data.update(recordNumber, data.read(recordNumber), cookie);
+                  data.unlock(recordNumber, cookie);
+                  finished.incrementAndGet();
+               } catch (Exception e)
+               {
+                  // left out of the finished count
+               }
+            }
+         };
+         client.start();
+         clients.add(client);
+      }
+
+      return clients;
+   }
+}
@@ -5,19 +5,30 @@ import suncertify.db.Data;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.file.FileUtils;
 
+import java.lang.reflect.Method;
 import java.util.Enumeration;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
+import java.util.logging.Logger;
 
 public class TestStressOnDb extends TestCase
 {
+  private static final int NO_OF_SIMULATED_CLIENTS = 10000;
+
+  private static final int ROWS_IN_DATABASE = 31;
+
+  private static final int PLATFORM_THREADS = 64;
+
   public void testLocksAreObeyed() throws Exception
   {
     FileUtils.setupFreshDatabase();
 
-    Enumeration<String> loggerNames = LogManager.getLogManager().getLoggerNames();
-    while (loggerNames.hasMoreElements())
-      LogManager.getLogManager().getLogger(loggerNames.nextElement()).setLevel(Level.FINEST);
+    setLogLevel(Level.FINEST);
 
     Data data = new Data();
 
@@ -30,6 +41,77 @@ public class TestStressOnDb extends TestCase
     thread1.join();
   }
 
+  public void testManySimulatedClients() throws Exception
+  {
+    FileUtils.setupFreshDatabase();
+    setLogLevel(Level.INFO);
+
+    final Data data = new Data();
+    final AtomicInteger finished = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+
+    ExecutorService executor = newClientExecutor();
+    long start = System.nanoTime();
+    for (int i = 0; i < NO_OF_SIMULATED_CLIENTS; i++)
+    {
+      final int recordNumber = new Random(i).nextInt(ROWS_IN_DATABASE);
+      executor.execute(new Runnable()
+      {
+        public void run()
+        {
+          try
+          {
+            long lock = data.lock(recordNumber);
+            try
+            {
+              data.update(recordNumber, data.read(recordNumber), lock);
+            } finally
+            {
+              data.unlock(recordNumber, lock);
+            }
+            finished.incrementAndGet();
+          } catch (Exception e)
+          {
+            failed.incrementAndGet();
+          }
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue("clients did not finish, locks are stuck", executor.awaitTermination(60, TimeUnit.SECONDS));
+    System.out.println(NO_OF_SIMULATED_CLIENTS + " clients finished in " + (System.nanoTime() - start) / 1000000 + "ms");
+
+    assertEquals(0, failed.get());
+    assertEquals(NO_OF_SIMULATED_CLIENTS, finished.get());
+  }
+
+  private ExecutorService newClientExecutor() throws Exception
+  {
+    try
+    {
+      // looked up by name so the suite still builds and runs on JVMs without virtual threads
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      System.out.println("Running simulated clients on virtual threads");
+      return (ExecutorService) method.invoke(null);
+    } catch (NoSuchMethodException e)
+    {
+      System.out.println("Virtual threads not available, running simulated clients on " + PLATFORM_THREADS + " platform threads");
+      return Executors.newFixedThreadPool(PLATFORM_THREADS);
+    }
+  }
+
+  private void setLogLevel(Level level)
+  {
+    Enumeration<String> loggerNames = LogManager.getLogManager().getLoggerNames();
+    while (loggerNames.hasMoreElements())
+    {
+      Logger logger = LogManager.getLogManager().getLogger(loggerNames.nextElement());
+      if (logger != null)
+        logger.setLevel(level);
+    }
+  }
+
   public static class Client implements Runnable
   {
     private Data data;
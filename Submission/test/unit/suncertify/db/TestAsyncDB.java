@@ -0,0 +1,87 @@
+package suncertify.db;
+
+import junit.framework.TestCase;
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.file.reader.MockFileDatabaseReader;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TestAsyncDB extends TestCase
+{
+  private FileData fileData;
+  private AsyncDB asyncDb;
+
+  protected void setUp() throws Exception
+  {
+    MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(0, false, new String[]{"Palace", "Smallville"}));
+    mockDb.databaseRows.add(new DatabaseRow(1, false, new String[]{"Castle", "Whoville"}));
+
+    fileData = new FileData(mockDb);
+    asyncDb = new AsyncDB(fileData, 1);
+  }
+
+  protected void tearDown() throws Exception
+  {
+    asyncDb.close();
+  }
+
+  public void testReadAndFind() throws Exception
+  {
+    assertEquals("Castle", asyncDb.read(1).get(1, TimeUnit.SECONDS)[0]);
+
+    int[] found = asyncDb.find(new String[]{"Pal", null}).get(1, TimeUnit.SECONDS);
+    assertEquals(1, found.length);
+    assertEquals(0, found[0]);
+  }
+
+  public void testMissingRecordFailsTheFuture() throws Exception
+  {
+    try
+    {
+      asyncDb.read(5).get(1, TimeUnit.SECONDS);
+      fail("record does not exist");
+    } catch (ExecutionException e)
+    {
+      assertTrue(e.getCause() instanceof RecordNotFoundException);
+    }
+
+    assertTrue(asyncDb.lock(5).isCompletedExceptionally());
+  }
+
+  public void testLockUpdateUnlock() throws Exception
+  {
+    long cookie = asyncDb.lock(1).get(1, TimeUnit.SECONDS);
+    asyncDb.update(1, new String[]{"Tower", "Whoville"}, cookie).get(1, TimeUnit.SECONDS);
+    asyncDb.unlock(1, cookie).get(1, TimeUnit.SECONDS);
+
+    assertEquals("Tower", fileData.read(1)[0]);
+  }
+
+  public void testWaitingLockDoesNotHoldAThread() throws Exception
+  {
+    long held = fileData.lock(1);
+
+    CompletableFuture<Long> waiting = asyncDb.lock(1);
+    assertFalse(waiting.isDone());
+
+    // the only I/O thread is still free to serve other requests
+    assertEquals("Palace", asyncDb.read(0).get(1, TimeUnit.SECONDS)[0]);
+
+    fileData.unlock(1, held);
+    long cookie = waiting.get(1, TimeUnit.SECONDS);
+    fileData.unlock(1, cookie);
+  }
+
+  public void testCancelledLockIsNotKept() throws Exception
+  {
+    long held = fileData.lock(1);
+
+    asyncDb.lock(1).cancel(false);
+    fileData.unlock(1, held);
+
+    fileData.tryLock(1);   // nobody was left queued behind the cancelled lock
+  }
+}
@@ -0,0 +1,250 @@
+package suncertify.db;
+
+import junit.framework.TestCase;
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.file.reader.MockFileDatabaseReader;
+import suncertify.db.filter.ColumnType;
+import suncertify.db.filter.Range;
+import suncertify.db.filter.SearchType;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class TestFileData extends TestCase
+{
+  private FileData fileData;
+
+  protected void setUp() throws Exception
+  {
+    MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(0, false, new String[]{"Palace", "Smallville", "4", "Y"}));
+    mockDb.databaseRows.add(new DatabaseRow(1, false, new String[]{"Castle", "Pallet Town", "2", "N"}));
+    mockDb.databaseRows.add(new DatabaseRow(2, true, new String[]{"Palms", "Smallville", "6", "Y"}));
+    mockDb.databaseRows.add(new DatabaseRow(3, false, new String[]{"Palisade", "Whoville", "2", "Y"}));
+
+    fileData = new FileData(mockDb);
+  }
+
+  public void testFindRecordsReturnsRowsFoundByFind()
+  {
+    String[][] searches = {{"pal", null, null, null}, {null, "small", null, null}, {"pal", null, "2", null}, {null, null, null, "y"}, {null, null, null, null}};
+
+    for (SearchType type : SearchType.values())
+      for (String[] criteria : searches)
+      {
+        List<DatabaseRow> records = fileData.findRecords(criteria, type);
+        int[] ids = new int[records.size()];
+        for (int i = 0; i < ids.length; i++)
+          ids[i] = records.get(i).getId();
+
+        assertTrue(type + " " + Arrays.toString(criteria), Arrays.equals(fileData.find(criteria, type), ids));
+      }
+  }
+
+  public void testFindRecordsCarriesData()
+  {
+    List<DatabaseRow> records = fileData.findRecords(new String[]{"pal", null, "2", null}, SearchType.AND);
+
+    assertEquals(1, records.size());
+    assertEquals(3, records.get(0).getId());
+    assertEquals("Whoville", records.get(0).getData()[1]);
+  }
+
+  public void testChangingFoundRecordsLeavesDatabaseAlone() throws Exception
+  {
+    String[] criteria = {"pal", null, null, null};
+    fileData.findRecords(criteria, SearchType.OR).get(0).getData()[0] = "Tower";
+    fileData.findRecords(criteria, SearchType.OR, new Range[0]).get(0).getData()[0] = "Tower";
+    fileData.findRecords(criteria, SearchType.OR, 0, 1).get(0).getData()[0] = "Tower";
+    fileData.findRecords(criteria, SearchType.OR, 0, 0, 1).get(0).getData()[0] = "Tower";
+
+    assertEquals("Palace", fileData.read(0)[0]);
+    assertTrue(Arrays.equals(new int[]{0, 3}, fileData.find(criteria, SearchType.OR)));
+    assertEquals("Palace", fileData.findRecords(criteria, SearchType.OR).get(0).getData()[0]);
+  }
+
+  public void testFindSeesWrites() throws Exception
+  {
+    String[] criteria = {"pal", null, null, null};
+    assertEquals(2, fileData.find(criteria, SearchType.OR).length);
+
+    long cookie = fileData.lock(3);
+    fileData.update(3, new String[]{"Tower", "Whoville", "2", "Y"}, cookie);
+    fileData.unlock(3, cookie);
+
+    assertTrue(Arrays.equals(new int[]{0}, fileData.find(criteria, SearchType.OR)));
+    assertEquals(1, fileData.findRecords(criteria, SearchType.OR).size());
+    assertEquals(1, fileData.getQueryCache().getInvalidations());
+  }
+
+  public void testFindRecordsUsesQueryCache() throws Exception
+  {
+    String[] criteria = {"pal", null, null, null};
+    fileData.findRecords(criteria, SearchType.OR);
+    fileData.findRecords(criteria, SearchType.OR, 0, 1);
+    List<DatabaseRow> records = fileData.findRecords(criteria, SearchType.OR, 0, 0, 5);
+
+    assertEquals(2, fileData.getQueryCache().getHits());
+    assertEquals(1, fileData.getQueryCache().getMisses());
+    assertEquals("Palace", records.get(0).getData()[0]);
+
+    long cookie = fileData.lock(3);
+    fileData.update(3, new String[]{"Tower", "Whoville", "2", "Y"}, cookie);
+    fileData.unlock(3, cookie);
+
+    assertEquals(1, fileData.findRecords(criteria, SearchType.OR).size());
+    assertEquals(2, fileData.getQueryCache().getMisses());
+  }
+
+  public void testPagedAndSortedRecordsDoNotFillQueryCache()
+  {
+    String[] criteria = {"pal", null, null, null};
+
+    assertEquals(1, fileData.findRecords(criteria, SearchType.OR, 0, 1).size());
+    assertEquals(2, fileData.findRecords(criteria, SearchType.OR, 0, 0, 5).size());
+
+    assertEquals(0, fileData.getQueryCache().size());
+    assertEquals(0, fileData.getQueryCache().getMisses());
+  }
+
+  public void testPagedAndSortedRecords()
+  {
+    String[] everything = {null, null, null, null};
+
+    List<DatabaseRow> page = fileData.findRecords(everything, SearchType.OR, 1, 5);
+    assertEquals(2, page.size());
+    assertEquals(1, page.get(0).getId());
+    assertEquals(3, page.get(1).getId());
+
+    List<DatabaseRow> sorted = fileData.findRecords(everything, SearchType.OR, 1, 0, 2);
+    assertEquals(2, sorted.size());
+    assertEquals("Pallet Town", sorted.get(0).getData()[1]);
+    assertEquals("Smallville", sorted.get(1).getData()[1]);
+  }
+
+  public void testFindByRateAndDateRanges() throws Exception
+  {
+    MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(0, false, new String[]{"Palace", "Smallville", "4", "Y", "$150.00", "2005/07/27", ""}));
+    mockDb.databaseRows.add(new DatabaseRow(1, false, new String[]{"Castle", "Pallet Town", "2", "N", "$90.00", "2005/11/01", ""}));
+    mockDb.databaseRows.add(new DatabaseRow(2, true, new String[]{"Palms", "Smallville", "6", "Y", "$100.00", "2005/07/30", ""}));
+    mockDb.databaseRows.add(new DatabaseRow(3, false, new String[]{"Palisade", "Whoville", "2", "Y", "$120.00", "2005/08/15", ""}));
+    fileData = new FileData(mockDb);
+
+    String[] everything = {null, null, null, null, null, null, null};
+    Range cheap = Range.below(FileData.RATE_COLUMN, 12100);
+    Range summer = Range.between(FileData.DATE_COLUMN, day("2005/07/01"), day("2005/08/31"));
+
+    assertTrue(Arrays.equals(new int[]{1, 3}, fileData.find(everything, SearchType.OR, new Range[]{cheap})));
+    assertTrue(Arrays.equals(new int[]{3}, fileData.find(everything, SearchType.OR, new Range[]{cheap, summer})));
+    assertTrue(Arrays.equals(new int[]{0}, fileData.find(new String[]{"pal", null, "4", null, null, null, null}, SearchType.AND, new Range[]{summer})));
+
+    List<DatabaseRow> records = fileData.findRecords(everything, SearchType.OR, new Range[]{summer});
+    assertEquals(2, records.size());
+    assertEquals("$120.00", records.get(1).getData()[FileData.RATE_COLUMN]);
+
+    long cookie = fileData.lock(0);
+    fileData.update(0, new String[]{"Palace", "Smallville", "4", "Y", "$80.00", "2005/07/27", ""}, cookie);
+    fileData.unlock(0, cookie);
+
+    assertTrue(Arrays.equals(new int[]{0, 3}, fileData.find(everything, SearchType.AND, new Range[]{cheap, summer})));
+  }
+
+  public void testRangeOnUntypedColumnIsRejected()
+  {
+    try
+    {
+      fileData.find(new String[]{null, null, null, null}, SearchType.OR, new Range[]{Range.atLeast(0, 1)});
+      fail();
+    } catch (IllegalArgumentException e)
+    {
+      // expected
+    }
+  }
+
+  public void testCreateRejectsDuplicateKeys() throws Exception
+  {
+    String[] existing = {"Palace", "Smallville", "2", "N"};
+
+    assertEquals(0, fileData.findKey(existing));
+    try
+    {
+      fileData.create(existing);
+      fail();
+    } catch (DuplicateKeyException e)
+    {
+      // expected
+    }
+
+    try
+    {
+      fileData.findKey(new String[]{"Palms", "Smallville", "6", "Y"});   // deleted
+      fail();
+    } catch (RecordNotFoundException e)
+    {
+      // expected
+    }
+  }
+
+  public void testUpdateAllWritesNothingWhenLastRowIsRejected() throws Exception
+  {
+    int[] records = {0, 1, 3};
+    long cookie = fileData.lockAll(records);
+    try
+    {
+      fileData.updateAll(records, new String[][]{
+              {"Palace", "Smallville", "4", "N"},
+              {"Castle", "Pallet Town", "2", "Y"},
+              {"Castle", "Pallet Town", "2", "Y"}}, cookie);   // takes the key record 1 keeps
+      fail();
+    } catch (DuplicateKeyException e)
+    {
+      // expected
+    }
+    fileData.unlockAll(records, cookie);
+
+    assertEquals("Y", fileData.read(0)[3]);
+    assertEquals("N", fileData.read(1)[3]);
+    assertEquals("Palisade", fileData.read(3)[0]);
+  }
+
+  public void testUpdateToAnotherRecordsKeyIsRejected() throws Exception
+  {
+    long cookie = fileData.lock(3);
+    try
+    {
+      fileData.update(3, new String[]{"Palace", "Smallville", "2", "Y"}, cookie);
+      fail();
+    } catch (DatabaseException e)
+    {
+      assertTrue(e.getCause() instanceof DuplicateKeyException);   // DB.update cannot declare it
+    }
+    fileData.unlock(3, cookie);
+
+    assertEquals("Palisade", fileData.read(3)[0]);
+  }
+
+  public void testCompareAndUpdateChecksVersionBeforeKey() throws Exception
+  {
+    long version = fileData.getVersion(3);
+    String[] clash = {"Palace", "Smallville", "2", "Y"};
+
+    assertFalse(fileData.compareAndUpdate(3, version + 1, clash));   // stale, whatever the key
+    try
+    {
+      fileData.compareAndUpdate(3, version, clash);
+      fail();
+    } catch (DuplicateKeyException e)
+    {
+      // expected
+    }
+
+    assertEquals("Palisade", fileData.read(3)[0]);
+    assertEquals(version, fileData.getVersion(3));
+  }
+
+  private long day(String date)
+  {
+    return ColumnType.EPOCH_DAY.parse(date);
+  }
+}
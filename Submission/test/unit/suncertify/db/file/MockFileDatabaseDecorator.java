@@ -10,6 +10,7 @@ public class MockFileDatabaseDecorator implements FileDatabaseDecorator
    public int updateCalls = 0;
    public int deleteCalls = 0;
    public boolean hasRow = true;
+   public long version = 0;
 
    public List<DatabaseRow> readAll()
    {
@@ -31,6 +32,11 @@ public class MockFileDatabaseDecorator implements FileDatabaseDecorator
       updateCalls++;
    }
 
+   public void updateAll(int[] recordNumbers, String[][] data, long lockCookie) throws RecordNotFoundException, SecurityException
+   {
+      updateCalls += recordNumbers.length;
+   }
+
    public void delete(int recordNumber, long lockCookie) throws RecordNotFoundException, SecurityException
    {
       deleteCalls++;
@@ -49,4 +55,15 @@ public class MockFileDatabaseDecorator implements FileDatabaseDecorator
    {
       return hasRow;
    }
+
+   public long getVersion(int recordNumber) throws RecordNotFoundException
+   {
+      return version;
+   }
+
+   public boolean compareAndUpdate(int recordNumber, long expectedVersion, String[] data) throws RecordNotFoundException
+   {
+      updateCalls++;
+      return expectedVersion == version;
+   }
 }
@@ -5,11 +5,14 @@ import suncertify.db.file.reader.MockFileDatabaseReader;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.file.meta.DatabaseRow;
 
+import java.util.List;
+
 public class TestCachedDecorator extends TestCase
 {
   public void testCacheWorks() throws RecordNotFoundException
   {
     MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(1, false, new String[]{"A"}));
     CachedDecorator cachedDb = new CachedDecorator(mockDb);
 
     assertEquals(1, mockDb.readCalls);
@@ -17,22 +20,80 @@ public class TestCachedDecorator extends TestCase
     assertEquals(1, mockDb.readCalls);
 
     cachedDb.delete(1, 0);
-    assertEquals(2, mockDb.readCalls);
     cachedDb.readAll();
     cachedDb.readAll();
-    assertEquals(2, mockDb.readCalls);
+    assertEquals(1, mockDb.readCalls);
+    assertFalse(cachedDb.hasRow(1, false));
 
-    cachedDb.create(new String[]{});
-    assertEquals(3, mockDb.readCalls);
+    cachedDb.create(new String[]{"B "});
     cachedDb.readAll();
     cachedDb.readAll();
-    assertEquals(3, mockDb.readCalls);
+    assertEquals(1, mockDb.readCalls);
+    assertEquals("B", cachedDb.read(0)[0]);
 
-    cachedDb.update(1, new String[]{}, 0);
-    assertEquals(4, mockDb.readCalls);
+    cachedDb.update(0, new String[]{"C"}, 0);
     cachedDb.readAll();
     cachedDb.readAll();
-    assertEquals(4, mockDb.readCalls);
+    assertEquals(1, mockDb.readCalls);
+    assertEquals("C", cachedDb.read(0)[0]);
+    assertEquals(2, cachedDb.readAll().size());
+  }
+
+  public void testReadAllIsSnapshot() throws RecordNotFoundException
+  {
+    MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(1, false, new String[]{"A"}));
+    CachedDecorator cachedDb = new CachedDecorator(mockDb);
+
+    List<DatabaseRow> before = cachedDb.readAll();
+    long version = cachedDb.getSnapshotVersion();
+    assertSame(before, cachedDb.readAll());
+
+    cachedDb.update(1, new String[]{"B"}, 0);
+
+    assertEquals("A", before.get(0).getData()[0]);
+    assertEquals("B", cachedDb.readAll().get(0).getData()[0]);
+    assertEquals(version + 1, cachedDb.getSnapshotVersion());
+
+    try
+    {
+      cachedDb.readAll().clear();
+      fail("snapshots are shared so must not be modifiable");
+    } catch (UnsupportedOperationException e)
+    {
+
+    }
+  }
+
+  public void testVersionedUpdate() throws RecordNotFoundException
+  {
+    MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(0, false, new String[]{"A"}));
+    CachedDecorator cachedDb = new CachedDecorator(mockDb);
+
+    long version = cachedDb.getVersion(0);
+    assertTrue(cachedDb.compareAndUpdate(0, version, new String[]{"B"}));
+    assertEquals("B", cachedDb.read(0)[0]);
+    assertEquals(version + 1, cachedDb.getVersion(0));
+
+    assertFalse(cachedDb.compareAndUpdate(0, version, new String[]{"C"}));
+    assertEquals("B", cachedDb.read(0)[0]);
+
+    cachedDb.update(0, new String[]{"D"}, 0);
+    assertEquals(version + 2, cachedDb.getVersion(0));
+
+    cachedDb.delete(0, 0);
+    try
+    {
+      cachedDb.compareAndUpdate(0, version + 3, new String[]{"E"});
+      fail("deleted");
+    } catch (RecordNotFoundException e)
+    {
+
+    }
+
+    cachedDb.create(new String[]{"F"});
+    assertEquals(version + 4, cachedDb.getVersion(0));
   }
 
   public void testHasRow()
@@ -45,6 +106,29 @@ public class TestCachedDecorator extends TestCase
 
     assertTrue(cachedDb.hasRow(1, true));
     assertFalse(cachedDb.hasRow(3, true));
+
+    assertTrue(cachedDb.hasRow(1, false));
+    assertTrue(cachedDb.hasRow(2, true));
+    assertFalse(cachedDb.hasRow(2, false));
+    assertFalse(cachedDb.hasRow(0, true));
+    assertFalse(cachedDb.hasRow(-1, true));
+    assertFalse(cachedDb.hasRow(100000, true));
+  }
+
+  public void testIndexFollowsWrites() throws RecordNotFoundException
+  {
+    MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(0, false, new String[]{"A"}));
+    CachedDecorator cachedDb = new CachedDecorator(mockDb);
+
+    cachedDb.delete(0, 0);
+    assertFalse(cachedDb.hasRow(0, false));
+    assertTrue(cachedDb.hasRow(0, true));
+
+    cachedDb.create(new String[]{"B"});   // mock reuses record 0
+    assertTrue(cachedDb.hasRow(0, false));
+    assertEquals("B", cachedDb.read(0)[0]);
+    assertEquals(1, cachedDb.readAll().size());
   }
 
   public void testRead() throws RecordNotFoundException
@@ -66,4 +150,19 @@ public class TestCachedDecorator extends TestCase
 
     }
   }
+
+  public void testReadReturnsACopy() throws Exception
+  {
+    MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(0, false, new String[]{"Castle", "Pallet Town"}));
+    mockDb.databaseRows.add(new DatabaseRow(1, false, new String[]{"Palace", "Smallville"}));
+    CachedDecorator cachedDb = new CachedDecorator(mockDb);
+
+    String[] data = cachedDb.read(0);
+    data[0] = "Zanzibar";
+    cachedDb.update(1, new String[]{"Palms", "Smallville"}, 0);
+
+    assertEquals("Castle", cachedDb.read(0)[0]);
+    assertEquals("Castle", cachedDb.readAll().get(0).getData()[0]);
+  }
 }
@@ -0,0 +1,128 @@
+package suncertify.db.file;
+
+import junit.framework.TestCase;
+import suncertify.db.DuplicateKeyException;
+import suncertify.db.file.index.BitmapIndex;
+import suncertify.db.file.index.ColumnIndex;
+import suncertify.db.file.index.PrefixIndex;
+import suncertify.db.file.index.RangeIndex;
+import suncertify.db.file.index.UniqueIndex;
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.db.file.reader.MockFileDatabaseReader;
+import suncertify.db.filter.SearchType;
+
+import java.util.BitSet;
+
+public class TestIndexedDecorator extends TestCase
+{
+  private IndexedDecorator indexedDb;
+
+  protected void setUp() throws Exception
+  {
+    MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(0, false, new String[]{"Palace", "Smallville", "4"}));
+    mockDb.databaseRows.add(new DatabaseRow(1, false, new String[]{"Castle", "Pallet Town", "2"}));
+    mockDb.databaseRows.add(new DatabaseRow(2, true, new String[]{"Palms", "Smallville", "6"}));
+
+    indexedDb = new IndexedDecorator(new CachedDecorator(mockDb), new PrefixIndex(), new PrefixIndex(), new BitmapIndex());
+  }
+
+  public void testDeletedRowsAreLeftOut()
+  {
+    assertEquals(bits(0), indexedDb.findCandidates(new String[]{"pal", null, null}, SearchType.OR));
+    assertEquals(bits(0), indexedDb.findCandidates(new String[]{null, "small", null}, SearchType.OR));
+  }
+
+  public void testIndexFollowsWrites() throws Exception
+  {
+    indexedDb.update(1, new String[]{"Palisade ", "Pallet Town", "2"}, 0);
+    assertEquals(bits(0, 1), indexedDb.findCandidates(new String[]{"pal", null, null}, SearchType.OR));
+
+    indexedDb.delete(0, 0);
+    assertEquals(bits(1), indexedDb.findCandidates(new String[]{"pal", null, null}, SearchType.OR));
+
+    int created = indexedDb.create(new String[]{"Palace", "Metropolis", "2"});   // the mock hands out record 0
+    assertEquals(bits(created, 1), indexedDb.findCandidates(new String[]{"pal", null, null}, SearchType.OR));
+    assertEquals(bits(created), indexedDb.findCandidates(new String[]{null, "metro", null}, SearchType.OR));
+    assertEquals(bits(created, 1), indexedDb.findCandidates(new String[]{null, null, "2"}, SearchType.OR));
+  }
+
+  public void testCandidates()
+  {
+    assertEquals(bits(0, 1), indexedDb.findCandidates(new String[]{"pal", "pal", null}, SearchType.OR));
+    assertEquals(bits(), indexedDb.findCandidates(new String[]{"pal", "pal", null}, SearchType.AND));
+    assertEquals(bits(0), indexedDb.findCandidates(new String[]{"pal", null, "4"}, SearchType.AND));
+    assertEquals(bits(0, 1), indexedDb.findCandidates(new String[]{"pal", null, "2"}, SearchType.OR));
+  }
+
+  public void testUnindexedColumnsNeedAScan()
+  {
+    assertNull(indexedDb.findCandidates(new String[]{"pal", null, null, "Y"}, SearchType.OR));
+    assertNull(indexedDb.findCandidates(new String[]{null, null, null, "Y"}, SearchType.AND));
+    assertNull(indexedDb.findCandidates(new String[]{null, null, null}, SearchType.AND));
+  }
+
+  public void testWritesMoveTheVersionOn() throws Exception
+  {
+    long version = indexedDb.getWriteVersion();
+
+    indexedDb.update(1, new String[]{"Castle", "Pallet Town", "2"}, 0);
+    assertEquals(version + 1, indexedDb.getWriteVersion());
+
+    assertFalse(indexedDb.compareAndUpdate(1, 0, new String[]{"Castle", "Pallet Town", "4"}));
+    assertEquals(version + 1, indexedDb.getWriteVersion());
+
+    indexedDb.delete(1, 0);
+    assertEquals(version + 2, indexedDb.getWriteVersion());
+  }
+
+  public void testKeysAreUnique() throws Exception
+  {
+    MockFileDatabaseReader mockDb = new MockFileDatabaseReader();
+    mockDb.databaseRows.add(new DatabaseRow(0, true, new String[]{"Palace", "Smallville", "4"}));
+    mockDb.databaseRows.add(new DatabaseRow(1, false, new String[]{"Castle", "Pallet Town", "2"}));
+    mockDb.databaseRows.add(new DatabaseRow(2, false, new String[]{"Castle", "Pallet Town", "6"}));   // written before keys were enforced
+    IndexedDecorator keyedDb = new IndexedDecorator(new CachedDecorator(mockDb), new ColumnIndex[0], new RangeIndex[0], new UniqueIndex(0, 1));
+
+    assertEquals(1, keyedDb.findKey(new String[]{"Castle", "Pallet Town"}));
+    assertEquals(UniqueIndex.NONE, keyedDb.findKey(new String[]{"Palace", "Smallville"}));
+
+    try
+    {
+      keyedDb.create(new String[]{"Castle", "Pallet Town", "4"});
+      fail();
+    } catch (DuplicateKeyException e)
+    {
+      // expected
+    }
+
+    keyedDb.update(2, new String[]{"Castle", "Pallet Town", "7"}, 0);   // a duplicate may keep its key
+    keyedDb.delete(1, 0);
+    assertEquals(2, keyedDb.findKey(new String[]{"Castle", "Pallet Town"}));
+
+    keyedDb.create(new String[]{"Palace", "Smallville", "4"});   // the mock hands out record 0
+    try
+    {
+      keyedDb.update(2, new String[]{"Palace", "Smallville", "7"}, 0);
+      fail();
+    } catch (DuplicateKeyException e)
+    {
+      // expected
+    }
+
+    keyedDb.delete(2, 0);
+    assertEquals(UniqueIndex.NONE, keyedDb.findKey(new String[]{"Castle", "Pallet Town"}));
+
+    int created = keyedDb.create(new String[]{"Castle", "Pallet Town", "4"});   // the mock hands out record 0
+    assertEquals(created, keyedDb.findKey(new String[]{"Castle", "Pallet Town"}));
+  }
+
+  private BitSet bits(int... recordNumbers)
+  {
+    BitSet result = new BitSet();
+    for (int recordNumber : recordNumbers)
+      result.set(recordNumber);
+
+    return result;
+  }
+}
@@ -1,10 +1,12 @@
 package suncertify.db.file;
 
 import junit.framework.TestCase;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class TestLockingDecorator extends TestCase
 {
@@ -17,7 +19,7 @@ public class TestLockingDecorator extends TestCase
       lockingDecorator = new LockingDecorator(fileDatabaseDecorator);
    }
 
-   public void testGoodLockUpdate() throws RecordNotFoundException
+   public void testGoodLockUpdate() throws Exception
    {
       long lockId = lockingDecorator.lock(1);
       lockingDecorator.update(1, new String[]{}, lockId);
@@ -45,7 +47,7 @@ public class TestLockingDecorator extends TestCase
       }
    }
 
-   public void testBadLockUpdate() throws RecordNotFoundException
+   public void testBadLockUpdate() throws Exception
    {
       long lockId = lockingDecorator.lock(1);
       try
@@ -89,6 +91,68 @@ public class TestLockingDecorator extends TestCase
       }
    }
 
+   public void testTryLockOnLockedRecord() throws Exception
+   {
+      long lockId = lockingDecorator.tryLock(1);
+      try
+      {
+         lockingDecorator.tryLock(1);
+         fail("already locked");
+      } catch (LockTimeoutException e)
+      {
+
+      }
+
+      try
+      {
+         lockingDecorator.lock(1, 10, TimeUnit.MILLISECONDS);
+         fail("already locked");
+      } catch (LockTimeoutException e)
+      {
+
+      }
+
+      lockingDecorator.unlock(1, lockId);
+      lockingDecorator.update(1, new String[]{}, lockingDecorator.lock(1, 10, TimeUnit.MILLISECONDS));
+      assertEquals(1, fileDatabaseDecorator.updateCalls);
+   }
+
+   public void testGroupLockUpdate() throws Exception
+   {
+      int[] records = new int[]{3, 1, 2};
+      long lockId = lockingDecorator.lockAll(records);
+
+      lockingDecorator.updateAll(records, new String[][]{{}, {}, {}}, lockId);
+      assertEquals(3, fileDatabaseDecorator.updateCalls);
+
+      try
+      {
+         lockingDecorator.updateAll(new int[]{1, 4}, new String[][]{{}, {}}, lockId);
+         fail("4 is not locked");
+      } catch (SecurityException e)
+      {
+         assertEquals(3, fileDatabaseDecorator.updateCalls);
+      }
+
+      lockingDecorator.unlockAll(records, lockId);
+      lockingDecorator.unlock(1, lockingDecorator.lock(1));
+   }
+
+   public void testCompareAndUpdateOnlyWhenUnlocked() throws Exception
+   {
+      assertTrue(lockingDecorator.compareAndUpdate(1, 0, new String[]{}));
+      assertEquals(1, fileDatabaseDecorator.updateCalls);
+
+      long lockId = lockingDecorator.lock(1);
+      assertFalse(lockingDecorator.compareAndUpdate(1, 0, new String[]{}));
+      assertEquals(1, fileDatabaseDecorator.updateCalls);
+
+      lockingDecorator.unlock(1, lockId);
+      assertFalse(lockingDecorator.compareAndUpdate(1, 5, new String[]{}));
+
+      lockingDecorator.unlock(1, lockingDecorator.tryLock(1));   // no hold left behind
+   }
+
    public void testMakesRandoms() throws RecordNotFoundException
    {
       Set<Long> locks = new HashSet<Long>();
@@ -0,0 +1,46 @@
+package suncertify.db.file.index;
+
+import junit.framework.TestCase;
+
+import java.util.BitSet;
+
+public class TestBitmapIndex extends TestCase
+{
+  private BitmapIndex index;
+
+  protected void setUp() throws Exception
+  {
+    index = new BitmapIndex();
+    index.put(0, "Y");
+    index.put(1, "N");
+    index.put(2, "y");
+    index.put(3, "N");
+  }
+
+  public void testValuesIgnoreCase()
+  {
+    assertEquals(bits(0, 2), index.startingWith("y"));
+    assertEquals(bits(1, 3), index.startingWith("N"));
+    assertEquals(bits(0, 1, 2, 3), index.startingWith(""));
+    assertEquals(bits(), index.startingWith("Yes"));
+  }
+
+  public void testPutAndRemove()
+  {
+    index.put(1, "Y");
+    index.remove(3);
+
+    assertEquals(bits(0, 1, 2), index.startingWith("Y"));
+    assertEquals(bits(), index.startingWith("N"));
+    assertEquals(3, index.size());
+  }
+
+  private BitSet bits(int... recordNumbers)
+  {
+    BitSet result = new BitSet();
+    for (int recordNumber : recordNumbers)
+      result.set(recordNumber);
+
+    return result;
+  }
+}
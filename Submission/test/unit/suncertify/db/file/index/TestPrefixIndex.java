@@ -0,0 +1,61 @@
+package suncertify.db.file.index;
+
+import junit.framework.TestCase;
+
+import java.util.BitSet;
+
+public class TestPrefixIndex extends TestCase
+{
+  private PrefixIndex index;
+
+  protected void setUp() throws Exception
+  {
+    index = new PrefixIndex();
+    index.put(0, "Palace");
+    index.put(1, "Castle");
+    index.put(2, "Pal");
+    index.put(3, "palace");
+    index.put(4, "Dew Drop Inn");
+  }
+
+  public void testPrefixIgnoresCase()
+  {
+    assertEquals(bits(0, 2, 3), index.startingWith("PAL"));
+    assertEquals(bits(0, 3), index.startingWith("pala"));
+    assertEquals(bits(1), index.startingWith("c"));
+    assertEquals(bits(), index.startingWith("x"));
+  }
+
+  public void testEmptyPrefixMatchesEverything()
+  {
+    assertEquals(bits(0, 1, 2, 3, 4), index.startingWith(""));
+  }
+
+  public void testPutReplacesOldValue()
+  {
+    index.put(1, "Dew Point");
+
+    assertEquals(bits(), index.startingWith("castle"));
+    assertEquals(bits(1, 4), index.startingWith("dew"));
+    assertEquals(5, index.size());
+  }
+
+  public void testRemove()
+  {
+    index.remove(0);
+    index.remove(3);
+    index.remove(3);
+
+    assertEquals(bits(2), index.startingWith("pal"));
+    assertEquals(3, index.size());
+  }
+
+  private BitSet bits(int... recordNumbers)
+  {
+    BitSet result = new BitSet();
+    for (int recordNumber : recordNumbers)
+      result.set(recordNumber);
+
+    return result;
+  }
+}
@@ -0,0 +1,102 @@
+package suncertify.db.file.index;
+
+import junit.framework.TestCase;
+import suncertify.db.filter.ColumnType;
+import suncertify.db.filter.Range;
+
+import java.util.BitSet;
+
+public class TestRangeIndex extends TestCase
+{
+  private RangeIndex index;
+
+  protected void setUp() throws Exception
+  {
+    index = new RangeIndex(ColumnType.CENTS);
+    index.put(0, "$150.00");
+    index.put(1, "$90.50");
+    index.put(2, "$150.00");
+    index.put(3, "$1,200.00");
+    index.put(4, "unknown");
+  }
+
+  public void testBetweenIsInclusive()
+  {
+    assertEquals(bits(0, 1, 2), index.between(9050, 15000));
+    assertEquals(bits(0, 2), index.between(15000, 15000));
+    assertEquals(bits(3), index.between(15001, Long.MAX_VALUE));
+    assertEquals(bits(), index.between(0, 9049));
+  }
+
+  public void testBelow()
+  {
+    Range cheap = Range.below(4, 15000);
+    assertEquals(bits(1), index.between(cheap.getMin(), cheap.getMax()));
+
+    index.put(5, "$-1.00");
+    Range nothing = Range.below(4, Long.MIN_VALUE);
+    assertEquals(bits(), index.between(nothing.getMin(), nothing.getMax()));
+  }
+
+  public void testUnparseableValuesAreNeverInRange()
+  {
+    assertEquals(bits(0, 1, 2, 3), index.between(Long.MIN_VALUE, Long.MAX_VALUE));
+    assertEquals(4, index.size());
+  }
+
+  public void testPutReplacesOldValue()
+  {
+    index.put(3, "$10");
+    index.put(1, "free");
+
+    assertEquals(bits(3), index.between(0, 9999));
+    assertEquals(bits(0, 2, 3), index.between(Long.MIN_VALUE, Long.MAX_VALUE));
+    assertEquals(3, index.size());
+  }
+
+  public void testRemove()
+  {
+    index.remove(0);
+    index.remove(0);
+
+    assertEquals(bits(2), index.between(15000, 15000));
+    assertEquals(3, index.size());
+  }
+
+  public void testWritesAfterSearching()
+  {
+    assertEquals(bits(1), index.between(0, 10000));
+
+    index.put(0, "$50.00");
+    index.put(5, "$60.00");
+    index.remove(1);
+
+    assertEquals(bits(0, 5), index.between(0, 10000));
+    assertEquals(4, index.size());
+  }
+
+  public void testManyValuesLoadedOutOfOrder()
+  {
+    RangeIndex large = new RangeIndex(ColumnType.CENTS);
+    BitSet expected = new BitSet();
+    for (int i = 0; i < 1000; i++)
+    {
+      int dollars = (i * 7919) % 1000;
+      large.put(i, "$" + dollars);
+      if (dollars >= 100 && dollars <= 199)
+        expected.set(i);
+    }
+
+    assertEquals(expected, large.between(10000, 19900));
+    assertEquals(1000, large.size());
+  }
+
+  private BitSet bits(int... recordNumbers)
+  {
+    BitSet result = new BitSet();
+    for (int recordNumber : recordNumbers)
+      result.set(recordNumber);
+
+    return result;
+  }
+}
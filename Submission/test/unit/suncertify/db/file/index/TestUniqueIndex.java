@@ -0,0 +1,80 @@
+package suncertify.db.file.index;
+
+import junit.framework.TestCase;
+
+public class TestUniqueIndex extends TestCase
+{
+  private UniqueIndex index;
+
+  protected void setUp() throws Exception
+  {
+    index = new UniqueIndex(0, 1, 3);
+    assertTrue(index.put(0, new String[]{"Palace", "Smallville", "4", "2005/07/27"}));
+    assertTrue(index.put(1, new String[]{"Palace", "Smallville", "4", "2005/07/28"}));
+  }
+
+  public void testGetMatchesWholeKeyOnly()
+  {
+    assertEquals(0, index.get(new String[]{"Palace ", "Smallville", "2", "2005/07/27"}));
+    assertEquals(1, index.get(new String[]{"Palace", "Smallville", "4", "2005/07/28"}));
+    assertEquals(UniqueIndex.NONE, index.get(new String[]{"Palace", "Smallvill", "4", "2005/07/27"}));
+    assertEquals(UniqueIndex.NONE, index.get(new String[]{"Pal", "aceSmallville", "4", "2005/07/27"}));
+  }
+
+  public void testPutRejectsKeyHeldByAnotherRecord()
+  {
+    assertFalse(index.put(2, new String[]{"Palace", "Smallville", "6", "2005/07/27"}));
+    assertTrue(index.put(0, new String[]{"Palace", "Smallville", "6", "2005/07/27"}));
+
+    assertEquals(0, index.get(new String[]{"Palace", "Smallville", "", "2005/07/27"}));
+    assertEquals(2, index.size());
+  }
+
+  public void testPutMovesRecordToNewKey()
+  {
+    assertTrue(index.put(1, new String[]{"Castle", "Smallville", "4", "2005/07/28"}));
+
+    assertEquals(UniqueIndex.NONE, index.get(new String[]{"Palace", "Smallville", "4", "2005/07/28"}));
+    assertEquals(1, index.get(new String[]{"Castle", "Smallville", "4", "2005/07/28"}));
+    assertEquals(2, index.size());
+  }
+
+  public void testRemoveFreesKey()
+  {
+    index.remove(0);
+    index.remove(0);
+
+    assertEquals(UniqueIndex.NONE, index.get(new String[]{"Palace", "Smallville", "4", "2005/07/27"}));
+    assertTrue(index.put(2, new String[]{"Palace", "Smallville", "4", "2005/07/27"}));
+    assertEquals(2, index.size());
+  }
+
+  public void testDuplicateTakesOverKey()
+  {
+    String[] palace = {"Palace", "Smallville", "4", "2005/07/27"};
+    assertFalse(index.put(2, palace));
+    assertFalse(index.put(3, palace));
+    assertEquals(UniqueIndex.NONE, index.clash(new int[]{2}, new String[][]{palace}));
+
+    index.remove(0);
+    assertEquals(2, index.get(palace));
+
+    assertTrue(index.put(2, new String[]{"Castle", "Smallville", "4", "2005/07/27"}));
+    assertEquals(3, index.get(palace));
+
+    index.remove(3);
+    assertEquals(UniqueIndex.NONE, index.get(palace));
+  }
+
+  public void testClashLooksAtWholeBatch()
+  {
+    String[] first = {"Palace", "Smallville", "4", "2005/07/27"};
+    String[] second = {"Palace", "Smallville", "4", "2005/07/28"};
+    String[] free = {"Castle", "Smallville", "4", "2005/07/27"};
+
+    assertEquals(UniqueIndex.NONE, index.clash(new int[]{0, 1}, new String[][]{second, first}));   // swapping keys
+    assertEquals(0, index.clash(new int[]{0}, new String[][]{second}));
+    assertEquals(1, index.clash(new int[]{0, 1}, new String[][]{free, free}));
+    assertEquals(1, index.clash(new int[]{0, 2}, new String[][]{first, second}));
+  }
+}
@@ -0,0 +1,514 @@
+package suncertify.db.file.lock;
+
+import junit.framework.TestCase;
+import suncertify.db.DeadlockException;
+import suncertify.db.LockTimeoutException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class TestLockTable extends TestCase
+{
+  private LockTable lockTable;
+
+  protected void setUp() throws Exception
+  {
+    lockTable = new LockTable();
+  }
+
+  public void testLockAndUnlock() throws InterruptedException
+  {
+    long cookie = lockTable.lock(1);
+    assertTrue(lockTable.isHeldBy(1, cookie));
+    assertFalse(lockTable.isHeldBy(1, cookie + 1));
+    assertFalse(lockTable.isHeldBy(2, cookie));
+
+    lockTable.unlock(1, cookie);
+    assertFalse(lockTable.isHeldBy(1, cookie));
+  }
+
+  public void testUnlockWithWrongCookie() throws InterruptedException
+  {
+    long cookie = lockTable.lock(1);
+    try
+    {
+      lockTable.unlock(1, cookie + 1);
+      fail("wrong lock given");
+    } catch (SecurityException e)
+    {
+
+    }
+
+    try
+    {
+      lockTable.unlock(2, cookie);
+      fail("never locked");
+    } catch (SecurityException e)
+    {
+
+    }
+  }
+
+  public void testTryLock() throws Exception
+  {
+    long cookie = lockTable.tryLock(1);
+    assertTrue(lockTable.isHeldBy(1, cookie));
+
+    try
+    {
+      lockTable.tryLock(1);
+      fail("already locked");
+    } catch (LockTimeoutException e)
+    {
+
+    }
+
+    lockTable.unlock(1, cookie);
+    assertTrue(lockTable.isHeldBy(1, lockTable.tryLock(1)));
+  }
+
+  public void testTimedLock() throws Exception
+  {
+    final long cookie = lockTable.lock(1);
+
+    long start = System.nanoTime();
+    try
+    {
+      lockTable.lock(1, 50, TimeUnit.MILLISECONDS);
+      fail("should time out");
+    } catch (LockTimeoutException e)
+    {
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          Thread.sleep(50);
+        } catch (InterruptedException e)
+        {
+        }
+        lockTable.unlock(1, cookie);
+      }
+    }.start();
+
+    long next = lockTable.lock(1, 5, TimeUnit.SECONDS);
+    assertTrue(lockTable.isHeldBy(1, next));
+  }
+
+  public void testTimedOutWaiterLeavesQueue() throws Exception
+  {
+    long cookie = lockTable.lock(1);
+    try
+    {
+      lockTable.lock(1, 10, TimeUnit.MILLISECONDS);
+      fail("should time out");
+    } catch (LockTimeoutException e)
+    {
+
+    }
+
+    lockTable.unlock(1, cookie);
+    lockTable.tryLock(1);
+  }
+
+  public void testLockAllUsesOneCookie() throws Exception
+  {
+    long cookie = lockTable.lockAll(new int[]{5, 3, 3, 9});
+
+    assertTrue(lockTable.isHeldBy(3, cookie));
+    assertTrue(lockTable.isHeldBy(5, cookie));
+    assertTrue(lockTable.isHeldBy(9, cookie));
+
+    try
+    {
+      lockTable.unlockAll(new int[]{3, 4}, cookie);
+      fail("4 was never locked");
+    } catch (SecurityException e)
+    {
+      assertTrue(lockTable.isHeldBy(3, cookie));
+    }
+
+    lockTable.unlockAll(new int[]{9, 5, 3}, cookie);
+    assertFalse(lockTable.isHeldBy(3, cookie));
+    assertFalse(lockTable.isHeldBy(5, cookie));
+    assertFalse(lockTable.isHeldBy(9, cookie));
+  }
+
+  public void testOpposingGroupLocksDoNotDeadlock() throws Exception
+  {
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++)
+    {
+      final int[] records = i % 2 == 0 ? new int[]{1, 2, 3, 4} : new int[]{4, 3, 2, 1};
+      threads[i] = new Thread()
+      {
+        public void run()
+        {
+          try
+          {
+            for (int j = 0; j < 500; j++)
+              lockTable.unlockAll(records, lockTable.lockAll(records));
+          } catch (InterruptedException e)
+          {
+          }
+        }
+      };
+      threads[i].start();
+    }
+
+    for (Thread thread : threads)
+    {
+      thread.join(10000);
+      assertFalse("group lockers deadlocked", thread.isAlive());
+    }
+  }
+
+  public void testOtherRecordsAreNotBlocked() throws InterruptedException
+  {
+    lockTable.lock(1);
+
+    Thread other = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          lockTable.lock(2);
+        } catch (InterruptedException e)
+        {
+        }
+      }
+    };
+    other.start();
+    other.join(1000);
+
+    assertFalse(other.isAlive());
+  }
+
+  public void testWaitersAreHandedTheLockInOrder() throws Exception
+  {
+    long cookie = lockTable.lock(1);
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 5; i++)
+    {
+      final int position = i;
+      Thread thread = new Thread()
+      {
+        public void run()
+        {
+          try
+          {
+            long myCookie = lockTable.lock(1);
+            order.add(position);
+            lockTable.unlock(1, myCookie);
+          } catch (InterruptedException e)
+          {
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+      waitUntilBlocked(thread);
+    }
+
+    lockTable.unlock(1, cookie);
+    for (Thread thread : threads)
+      thread.join(1000);
+
+    assertEquals(5, order.size());
+    for (int i = 0; i < 5; i++)
+      assertEquals(i, order.get(i).intValue());
+  }
+
+  public void testInterruptedWaiterLeavesQueue() throws Exception
+  {
+    long cookie = lockTable.lock(1);
+
+    Thread waiter = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          lockTable.lock(1);
+          fail("should have been interrupted");
+        } catch (InterruptedException e)
+        {
+        }
+      }
+    };
+    waiter.start();
+    waitUntilBlocked(waiter);
+    waiter.interrupt();
+    waiter.join(1000);
+
+    lockTable.unlock(1, cookie);
+    long next = lockTable.lock(1);   // would block if the interrupted waiter had been handed the lock
+    assertTrue(lockTable.isHeldBy(1, next));
+  }
+
+  public void testLeaseExpiresAndPassesToWaiter() throws Exception
+  {
+    LockTable leasedTable = new LockTable(50, TimeUnit.MILLISECONDS);
+    try
+    {
+      long abandoned = leasedTable.lock(1);
+
+      long start = System.nanoTime();
+      long next = leasedTable.lock(1, 5, TimeUnit.SECONDS);
+
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+      assertTrue(leasedTable.isHeldBy(1, next));
+      assertFalse(leasedTable.isHeldBy(1, abandoned));
+      assertFalse(leasedTable.renew(1, abandoned));
+    } finally
+    {
+      leasedTable.close();
+    }
+  }
+
+  public void testRenewingKeepsLease() throws Exception
+  {
+    LockTable leasedTable = new LockTable(50, TimeUnit.MILLISECONDS);
+    try
+    {
+      long cookie = leasedTable.lock(1);
+      for (int i = 0; i < 10; i++)
+      {
+        Thread.sleep(20);
+        assertTrue(leasedTable.renew(1, cookie));
+      }
+
+      Thread.sleep(150);
+      assertFalse(leasedTable.isHeldBy(1, cookie));
+      leasedTable.tryLock(1);
+    } finally
+    {
+      leasedTable.close();
+    }
+  }
+
+  public void testLocksNeverExpireWithoutLease() throws Exception
+  {
+    long cookie = lockTable.lock(1);
+    Thread.sleep(100);
+
+    assertTrue(lockTable.renew(1, cookie));
+    assertTrue(lockTable.isHeldBy(1, cookie));
+  }
+
+  public void testYoungestWaiterInCycleIsAborted() throws Exception
+  {
+    final LockTable detectingTable = new LockTable(0, TimeUnit.MILLISECONDS, true);
+    final long first = detectingTable.lock(1);
+
+    final long[] second = new long[1];
+    final Throwable[] failure = new Throwable[1];
+    Thread other = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          second[0] = detectingTable.lock(2);
+          detectingTable.lock(1);   // waits for the test thread
+        } catch (Throwable e)
+        {
+          failure[0] = e;
+        }
+      }
+    };
+    other.start();
+    waitUntilBlocked(other);
+    assertEquals(1, detectingTable.getWaitingClients());
+
+    try
+    {
+      detectingTable.lock(2);   // would complete the cycle
+      fail("should detect deadlock");
+    } catch (DeadlockException e)
+    {
+      assertEquals(1, detectingTable.getDeadlocksDetected());
+    }
+
+    detectingTable.unlock(1, first);
+    other.join(1000);
+
+    assertNull(failure[0]);
+    assertEquals(0, detectingTable.getWaitingClients());
+    assertTrue(detectingTable.isHeldBy(2, second[0]));
+  }
+
+  public void testWaitingWithoutCycleIsAllowed() throws Exception
+  {
+    final LockTable detectingTable = new LockTable(0, TimeUnit.MILLISECONDS, true);
+    final long first = detectingTable.lock(1);
+
+    Thread other = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          detectingTable.lock(1);
+        } catch (InterruptedException e)
+        {
+        }
+      }
+    };
+    other.start();
+    waitUntilBlocked(other);
+
+    detectingTable.lock(2);
+    detectingTable.unlock(1, first);
+    other.join(1000);
+
+    assertFalse(other.isAlive());
+    assertEquals(0, detectingTable.getDeadlocksDetected());
+  }
+
+  public void testClientsSharingAThreadAreNotADeadlock() throws Exception
+  {
+    final LockTable detectingTable = new LockTable(0, TimeUnit.MILLISECONDS, true);
+    final Object firstClient = "first";
+    final Object secondClient = "second";
+    final long first = detectingTable.lock(1, firstClient);   // this thread serves both clients
+
+    final Throwable[] failure = new Throwable[1];
+    Thread other = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          long second = detectingTable.lock(2, "other");
+          long third = detectingTable.lock(1, "other");   // waits for the first client
+          detectingTable.unlock(1, third);
+          detectingTable.unlock(2, second);
+        } catch (Throwable e)
+        {
+          failure[0] = e;
+        }
+      }
+    };
+    other.start();
+    waitUntilBlocked(other);
+
+    final Thread pooled = Thread.currentThread();
+    Thread unlocker = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          waitUntilBlocked(pooled);
+          detectingTable.unlock(1, first);   // the first client finishes elsewhere
+        } catch (Throwable e)
+        {
+          failure[0] = e;
+        }
+      }
+    };
+    unlocker.start();
+
+    long cookie = detectingTable.lock(2, secondClient);   // a thread based graph would see a cycle here
+    other.join(1000);
+    unlocker.join(1000);
+
+    assertNull(failure[0]);
+    assertTrue(detectingTable.isHeldBy(2, cookie));
+    assertEquals(0, detectingTable.getDeadlocksDetected());
+  }
+
+  public void testEqualClientKeysAreOneClient() throws Exception
+  {
+    final LockTable detectingTable = new LockTable(0, TimeUnit.MILLISECONDS, true);
+    final long first = detectingTable.tryLock(1, new String("session"));
+
+    final Throwable[] failure = new Throwable[1];
+    Thread other = new Thread()
+    {
+      public void run()
+      {
+        try
+        {
+          long second = detectingTable.lock(2, "other");
+          long third = detectingTable.lock(1, "other");   // waits for the session
+          detectingTable.unlock(1, third);
+          detectingTable.unlock(2, second);
+        } catch (Throwable e)
+        {
+          failure[0] = e;
+        }
+      }
+    };
+    other.start();
+    waitUntilBlocked(other);
+
+    try
+    {
+      detectingTable.lock(2, 10, TimeUnit.SECONDS, new String("session"));   // the same session under another key object
+      fail("should detect deadlock");
+    } catch (DeadlockException e)
+    {
+      assertEquals(1, detectingTable.getDeadlocksDetected());
+    }
+
+    detectingTable.unlock(1, first);
+    other.join(1000);
+
+    assertNull(failure[0]);
+    assertFalse(other.isAlive());
+  }
+
+  public void testAsyncLockIsGrantedOnUnlock() throws Exception
+  {
+    long first = lockTable.lock(1);
+
+    CompletableFuture<Long> second = lockTable.lockAsync(1);
+    assertFalse(second.isDone());
+
+    lockTable.unlock(1, first);
+    assertTrue(second.isDone());
+    assertTrue(lockTable.isHeldBy(1, second.get()));
+  }
+
+  public void testAsyncLockIsGrantedStraightAwayWhenFree() throws Exception
+  {
+    CompletableFuture<Long> cookie = lockTable.lockAsync(1);
+
+    assertTrue(cookie.isDone());
+    assertTrue(lockTable.isHeldBy(1, cookie.get()));
+  }
+
+  public void testCancelledAsyncWaiterIsSkipped() throws Exception
+  {
+    long first = lockTable.lock(1);
+    CompletableFuture<Long> cancelled = lockTable.lockAsync(1);
+    CompletableFuture<Long> third = lockTable.lockAsync(1);
+
+    cancelled.cancel(false);
+    lockTable.unlock(1, first);
+
+    assertTrue(third.isDone());
+    assertTrue(lockTable.isHeldBy(1, third.get()));
+
+    lockTable.unlock(1, third.get());
+    lockTable.tryLock(1);   // nobody was left queued behind the cancelled waiter
+  }
+
+  private void waitUntilBlocked(Thread thread) throws InterruptedException
+  {
+    while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING)
+      Thread.sleep(1);
+  }
+}
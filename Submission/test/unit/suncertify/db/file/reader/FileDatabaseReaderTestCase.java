@@ -0,0 +1,67 @@
+package suncertify.db.file.reader;
+
+import junit.framework.TestCase;
+import suncertify.db.file.FileUtils;
+import suncertify.db.file.meta.DatabaseRow;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+// checks every reader must pass, each reader's test extends this with a way to open it
+public abstract class FileDatabaseReaderTestCase<R extends FileDatabaseReader> extends TestCase
+{
+  protected R fileAccessor;
+
+  protected void setUp() throws Exception
+  {
+    FileUtils.setupFreshDatabase();
+    fileAccessor = open(FileUtils.DATABASE_FILE);
+  }
+
+  protected abstract R open(File file) throws Exception;
+
+  public void testCreateReusesDeletedRow() throws Exception
+  {
+    String[] record = new String[]{"Name", "Location", "4", "Y", "$200.00", "2008/02/05", "bob W"};
+
+    fileAccessor.delete(7);
+    fileAccessor.delete(9);
+    int first = fileAccessor.create(record);
+    int second = fileAccessor.create(record);
+
+    assertTrue((first == 7 && second == 9) || (first == 9 && second == 7));
+    assertEquals(31, fileAccessor.readAll().size());
+    assertEquals(31, fileAccessor.create(record));
+  }
+
+  public void testReusedRowIsWrittenWhole() throws Exception
+  {
+    String[] neighbour = fileAccessor.readAll().get(8).getData();
+    StringBuilder longName = new StringBuilder();
+    for (int i = 0; i < 200; i++)
+      longName.append('x');
+
+    fileAccessor.delete(7);
+    assertEquals(7, fileAccessor.create(new String[]{longName.toString(), "Location"}));
+
+    List<DatabaseRow> rows = open(FileUtils.DATABASE_FILE).readAll();
+    assertEquals(Arrays.asList(neighbour), Arrays.asList(rows.get(8).getData()));
+    assertTrue(rows.get(8).isValid());
+
+    String[] reused = rows.get(7).getData();
+    assertTrue(longName.toString().startsWith(reused[0]));
+    assertEquals("Location", reused[1]);
+    for (int field = 2; field < reused.length; field++)
+      assertEquals("", reused[field]);
+  }
+
+  public void testDeletedRowsFoundOnOpen() throws Exception
+  {
+    fileAccessor.delete(4);
+
+    R reopened = open(FileUtils.DATABASE_FILE);
+    assertEquals(4, reopened.create(new String[]{"Name", "Location", "4", "Y", "$200.00", "2008/02/05", ""}));
+    assertTrue(reopened.readAll().get(4).isValid());
+  }
+}
@@ -0,0 +1,141 @@
+package suncertify.db.file.reader;
+
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.file.FileUtils;
+import suncertify.db.file.meta.DatabaseRow;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestChannelFileDatabaseReader extends FileDatabaseReaderTestCase<ChannelFileDatabaseReader>
+{
+  protected ChannelFileDatabaseReader open(File file) throws Exception
+  {
+    return new ChannelFileDatabaseReader(file);
+  }
+
+  public void testRead() throws RecordNotFoundException
+  {
+    String[] result = fileAccessor.read(2);
+    checkValues("Excelsior", "Smallville", "4", "Y", "$230.00", "2003/02/05", "", result);
+  }
+
+  public void testReadMatchesSimpleReader() throws Exception
+  {
+    List<DatabaseRow> mapped = fileAccessor.readAll();
+    List<DatabaseRow> simple = new SimpleFileDatabaseReader(FileUtils.DATABASE_FILE).readAll();
+
+    assertEquals(simple.size(), mapped.size());
+    for (int i = 0; i < simple.size(); i++)
+    {
+      assertEquals(simple.get(i).getId(), mapped.get(i).getId());
+      assertEquals(simple.get(i).isValid(), mapped.get(i).isValid());
+      assertEquals(Arrays.asList(simple.get(i).getData()), Arrays.asList(mapped.get(i).getData()));
+    }
+  }
+
+  public void testCreateAppends() throws RecordNotFoundException
+  {
+    String[] record = new String[]{"Name", "Location", "4", "Y", "$200.00", "2008/02/05", "bob W"};
+
+    assertEquals(31, fileAccessor.create(record));
+    assertEquals(32, fileAccessor.create(record));
+    assertEquals(33, fileAccessor.readAll().size());
+
+    checkValues("Name", "Location", "4", "Y", "$200.00", "2008/02/05", "bob W", fileAccessor.read(32));
+  }
+
+  public void testUpdate() throws RecordNotFoundException
+  {
+    String[] result = fileAccessor.read(1);
+    result[0] = "Changed Name";
+    result[6] = "Jim D";
+    fileAccessor.update(1, result);
+
+    checkValues("Changed Name", result[1], result[2], result[3], result[4], result[5], "Jim D", fileAccessor.read(1));
+  }
+
+  public void testDelete() throws RecordNotFoundException
+  {
+    fileAccessor.delete(5);
+    assertFalse(fileAccessor.readAll().get(5).isValid());
+
+    try
+    {
+      fileAccessor.update(5, fileAccessor.read(5));
+      fail("expected failure");
+    } catch (RecordNotFoundException e)
+    {
+      assertTrue(e.getMessage().contains("5"));
+    }
+  }
+
+  public void testConcurrentReadsAndWrites() throws Exception
+  {
+    final String[] original = fileAccessor.read(3);
+    final List<Throwable> failures = new ArrayList<Throwable>();
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++)
+    {
+      final int recordNumber = i;
+      threads[i] = new Thread()
+      {
+        public void run()
+        {
+          try
+          {
+            for (int j = 0; j < 200; j++)
+            {
+              String[] record = fileAccessor.read(recordNumber + 10);
+              record[6] = String.valueOf(j);
+              fileAccessor.update(recordNumber + 10, record);
+              assertEquals(Arrays.asList(original), Arrays.asList(fileAccessor.read(3)));
+            }
+          } catch (Throwable e)
+          {
+            synchronized (failures)
+            {
+              failures.add(e);
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+
+    for (Thread thread : threads)
+      thread.join();
+
+    assertTrue(failures.toString(), failures.isEmpty());
+    for (int i = 0; i < threads.length; i++)
+      assertEquals("199", fileAccessor.read(i + 10)[6]);
+  }
+
+  public void testReadPastEnd()
+  {
+    try
+    {
+      fileAccessor.read(31);
+      fail("expected failure");
+    } catch (RecordNotFoundException e)
+    {
+
+    }
+  }
+
+  private void checkValues(String name, String location, String beds, String smoking, String price, String date, String customer, String[] result)
+  {
+    assertEquals(7, result.length);
+
+    assertEquals(name, result[0]);
+    assertEquals(location, result[1]);
+    assertEquals(beds, result[2]);
+    assertEquals(smoking, result[3]);
+    assertEquals(price, result[4]);
+    assertEquals(date, result[5]);
+    assertEquals(customer, result[6]);
+  }
+}
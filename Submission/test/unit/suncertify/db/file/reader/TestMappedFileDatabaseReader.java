@@ -0,0 +1,117 @@
+package suncertify.db.file.reader;
+
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.file.FileUtils;
+import suncertify.db.file.meta.DatabaseRow;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestMappedFileDatabaseReader extends FileDatabaseReaderTestCase<MappedFileDatabaseReader>
+{
+  protected MappedFileDatabaseReader open(File file) throws Exception
+  {
+    return new MappedFileDatabaseReader(file);
+  }
+
+  public void testRead() throws RecordNotFoundException
+  {
+    String[] result = fileAccessor.read(2);
+    checkValues("Excelsior", "Smallville", "4", "Y", "$230.00", "2003/02/05", "", result);
+  }
+
+  public void testReadMatchesSimpleReader() throws Exception
+  {
+    List<DatabaseRow> mapped = fileAccessor.readAll();
+    List<DatabaseRow> simple = new SimpleFileDatabaseReader(FileUtils.DATABASE_FILE).readAll();
+
+    assertEquals(simple.size(), mapped.size());
+    for (int i = 0; i < simple.size(); i++)
+    {
+      assertEquals(simple.get(i).getId(), mapped.get(i).getId());
+      assertEquals(simple.get(i).isValid(), mapped.get(i).isValid());
+      assertEquals(Arrays.asList(simple.get(i).getData()), Arrays.asList(mapped.get(i).getData()));
+    }
+  }
+
+  public void testCreateGrowsFileInChunks() throws Exception
+  {
+    String[] record = new String[]{"Name", "Location", "4", "Y", "$200.00", "2008/02/05", "bob W"};
+
+    assertEquals(31, fileAccessor.create(record));
+    assertEquals(32, fileAccessor.create(record));
+
+    List<DatabaseRow> rows = fileAccessor.readAll();
+    assertEquals(95, rows.size());
+    assertTrue(rows.get(32).isValid());
+    assertFalse(rows.get(33).isValid());
+    assertFalse(rows.get(94).isValid());
+
+    checkValues("Name", "Location", "4", "Y", "$200.00", "2008/02/05", "bob W", fileAccessor.read(32));
+  }
+
+  public void testChunkIsDeletedRowsOnDisk() throws Exception
+  {
+    fileAccessor.create(new String[]{"Name", "Location", "4", "Y", "$200.00", "2008/02/05", ""});
+
+    List<DatabaseRow> simple = new SimpleFileDatabaseReader(FileUtils.DATABASE_FILE).readAll();
+    assertEquals(95, simple.size());
+    assertTrue(simple.get(31).isValid());
+    assertFalse(simple.get(32).isValid());
+
+    MappedFileDatabaseReader reopened = new MappedFileDatabaseReader(FileUtils.DATABASE_FILE);
+    assertEquals(32, reopened.create(new String[]{"Name", "Location", "4", "Y", "$200.00", "2008/02/05", ""}));
+    assertEquals(95, reopened.readAll().size());
+  }
+
+  public void testUpdate() throws RecordNotFoundException
+  {
+    String[] result = fileAccessor.read(1);
+    result[0] = "Changed Name";
+    result[6] = "Jim D";
+    fileAccessor.update(1, result);
+
+    checkValues("Changed Name", result[1], result[2], result[3], result[4], result[5], "Jim D", fileAccessor.read(1));
+  }
+
+  public void testDelete() throws RecordNotFoundException
+  {
+    fileAccessor.delete(5);
+    assertFalse(fileAccessor.readAll().get(5).isValid());
+
+    try
+    {
+      fileAccessor.update(5, fileAccessor.read(5));
+      fail("expected failure");
+    } catch (RecordNotFoundException e)
+    {
+      assertTrue(e.getMessage().contains("5"));
+    }
+  }
+
+  public void testReadPastEnd()
+  {
+    try
+    {
+      fileAccessor.read(31);
+      fail("expected failure");
+    } catch (RecordNotFoundException e)
+    {
+
+    }
+  }
+
+  private void checkValues(String name, String location, String beds, String smoking, String price, String date, String customer, String[] result)
+  {
+    assertEquals(7, result.length);
+
+    assertEquals(name, result[0]);
+    assertEquals(location, result[1]);
+    assertEquals(beds, result[2]);
+    assertEquals(smoking, result[3]);
+    assertEquals(price, result[4]);
+    assertEquals(date, result[5]);
+    assertEquals(customer, result[6]);
+  }
+}
@@ -1,20 +1,17 @@
 package suncertify.db.file.reader;
 
-import junit.framework.TestCase;
 import suncertify.db.RecordNotFoundException;
-import suncertify.db.file.FileUtils;
 import suncertify.db.file.meta.DatabaseRow;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 
-public class TestSimpleFileDatabaseReader extends TestCase
+public class TestSimpleFileDatabaseReader extends FileDatabaseReaderTestCase<SimpleFileDatabaseReader>
 {
-  private SimpleFileDatabaseReader fileAccessor;
-
-  protected void setUp() throws Exception
+  protected SimpleFileDatabaseReader open(File file) throws Exception
   {
-    FileUtils.setupFreshDatabase();
-    fileAccessor = new SimpleFileDatabaseReader(FileUtils.DATABASE_FILE);
+    return new SimpleFileDatabaseReader(file);
   }
 
   public void testRead() throws RecordNotFoundException
@@ -64,6 +61,21 @@ public class TestSimpleFileDatabaseReader extends TestCase
     assertEquals(31, all.size());
   }
 
+  public void testFindAllMatchesSingleReads() throws RecordNotFoundException
+  {
+    for (int i = 0; i < 2000; i++)
+      fileAccessor.create(new String[]{"Name " + i, "Location", "4", "Y", "$200.00", "2008/02/05", ""});
+
+    List<DatabaseRow> all = fileAccessor.readAll();
+    assertEquals(2031, all.size());
+
+    for (int recordNumber : new int[]{0, 2, 30, 1637, 1638, 2030})
+    {
+      assertEquals(recordNumber, all.get(recordNumber).getId());
+      assertEquals(Arrays.asList(fileAccessor.read(recordNumber)), Arrays.asList(all.get(recordNumber).getData()));
+    }
+  }
+
   private void checkValues(String name, String location, String beds, String smoking, String price, String date, String customer, String[] result)
   {
     assertEquals(7, result.length);
@@ -0,0 +1,39 @@
+package suncertify.db.filter;
+
+import junit.framework.TestCase;
+
+public class TestColumnType extends TestCase
+{
+  public void testCents()
+  {
+    assertEquals(15000, ColumnType.CENTS.parse("$150.00"));
+    assertEquals(9050, ColumnType.CENTS.parse(" $90.5 "));
+    assertEquals(120000, ColumnType.CENTS.parse("$1,200"));
+    assertEquals(-150, ColumnType.CENTS.parse("-$1.50"));
+    assertEquals(-50, ColumnType.CENTS.parse("$-0.5"));
+  }
+
+  public void testEpochDay()
+  {
+    assertEquals(0, ColumnType.EPOCH_DAY.parse("1970/01/01"));
+    assertEquals(1, ColumnType.EPOCH_DAY.parse("1970/01/02") - ColumnType.EPOCH_DAY.parse("1970/01/01"));
+    assertTrue(ColumnType.EPOCH_DAY.parse("2005/07/27") < ColumnType.EPOCH_DAY.parse("2005/11/01"));
+  }
+
+  public void testBadValues()
+  {
+    String[][] bad = {{"CENTS", "free"}, {"CENTS", ""}, {"CENTS", "$1.505"}, {"CENTS", "$1.-5"}, {"CENTS", "$.50"}, {"EPOCH_DAY", "2005-07-27"}, {"EPOCH_DAY", "2005/02/30"}, {"EPOCH_DAY", "soon"}};
+
+    for (String[] value : bad)
+    {
+      try
+      {
+        ColumnType.valueOf(value[0]).parse(value[1]);
+        fail(value[0] + " parsed " + value[1]);
+      } catch (IllegalArgumentException e)
+      {
+        // expected
+      }
+    }
+  }
+}
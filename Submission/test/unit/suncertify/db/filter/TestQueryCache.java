@@ -0,0 +1,87 @@
+package suncertify.db.filter;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class TestQueryCache extends TestCase
+{
+  public void testHitAndMiss()
+  {
+    QueryCache cache = new QueryCache();
+
+    assertNull(cache.get(new String[]{"pal", null}, SearchType.OR, 0));
+    cache.put(new String[]{"pal", null}, SearchType.OR, 0, new int[]{1, 2});
+
+    assertTrue(Arrays.equals(new int[]{1, 2}, cache.get(new String[]{"pal", null}, SearchType.OR, 0)));
+    assertNull(cache.get(new String[]{"pal", null}, SearchType.AND, 0));
+    assertNull(cache.get(new String[]{null, "pal"}, SearchType.OR, 0));
+
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+  }
+
+  public void testPeekDoesNotCountMisses()
+  {
+    QueryCache cache = new QueryCache();
+
+    assertNull(cache.peek(new String[]{"pal"}, SearchType.OR, 0));
+    cache.put(new String[]{"pal"}, SearchType.OR, 0, new int[]{1});
+
+    assertTrue(Arrays.equals(new int[]{1}, cache.peek(new String[]{"pal"}, SearchType.OR, 0)));
+    assertNull(cache.peek(new String[]{"pal"}, SearchType.OR, 1));
+
+    assertEquals(1, cache.getHits());
+    assertEquals(0, cache.getMisses());
+    assertEquals(1, cache.getInvalidations());
+  }
+
+  public void testWriteMakesEntryStale()
+  {
+    QueryCache cache = new QueryCache();
+    cache.put(new String[]{"pal"}, SearchType.OR, 4, new int[]{1});
+
+    assertNull(cache.get(new String[]{"pal"}, SearchType.OR, 5));
+    assertEquals(1, cache.getInvalidations());
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+  }
+
+  public void testCallersCannotChangeCachedResult()
+  {
+    QueryCache cache = new QueryCache();
+    String[] criteria = {"pal"};
+    int[] result = {1, 2};
+    cache.put(criteria, SearchType.OR, 0, result);
+
+    criteria[0] = "cas";
+    result[0] = 9;
+    cache.get(new String[]{"pal"}, SearchType.OR, 0)[1] = 9;
+
+    assertTrue(Arrays.equals(new int[]{1, 2}, cache.get(new String[]{"pal"}, SearchType.OR, 0)));
+  }
+
+  public void testLeastRecentlyUsedIsEvictedFirst()
+  {
+    QueryCache cache = new QueryCache(1200);
+    cache.put(new String[]{"a"}, SearchType.OR, 0, new int[100]);
+    cache.put(new String[]{"b"}, SearchType.OR, 0, new int[100]);
+    cache.get(new String[]{"a"}, SearchType.OR, 0);
+
+    cache.put(new String[]{"c"}, SearchType.OR, 0, new int[100]);
+
+    assertNotNull(cache.get(new String[]{"a"}, SearchType.OR, 0));
+    assertNull(cache.get(new String[]{"b"}, SearchType.OR, 0));
+    assertNotNull(cache.get(new String[]{"c"}, SearchType.OR, 0));
+    assertEquals(1, cache.getEvictions());
+    assertTrue(cache.getBytes() <= 1200);
+  }
+
+  public void testResultLargerThanCapIsNotKept()
+  {
+    QueryCache cache = new QueryCache(100);
+    cache.put(new String[]{"a"}, SearchType.OR, 0, new int[100]);
+
+    assertEquals(0, cache.size());
+  }
+}
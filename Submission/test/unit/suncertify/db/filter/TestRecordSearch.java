@@ -0,0 +1,118 @@
+package suncertify.db.filter;
+
+import junit.framework.TestCase;
+import suncertify.db.file.meta.DatabaseRow;
+import suncertify.lang.filters.Filters;
+import suncertify.lang.filters.Plan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class TestRecordSearch extends TestCase
+{
+  private static final int NO_OF_ROWS = 5000;
+
+  private ForkJoinPool pool;
+  private List<DatabaseRow> rows;
+  private Plan<DatabaseRow> plan;
+
+  protected void setUp() throws Exception
+  {
+    pool = new ForkJoinPool(4);
+
+    rows = new ArrayList<DatabaseRow>();
+    for (int i = 0; i < NO_OF_ROWS; i++)
+      rows.add(new DatabaseRow(i, i % 7 == 0, new String[]{i % 3 == 0 ? "Palace" : "Castle", "Smallville"}));
+
+    plan = new Filters<DatabaseRow>(new RemoveDeletedFilter(), new StartsWithFilter()).compile(new String[]{"pal", null}, SearchType.AND);
+  }
+
+  protected void tearDown() throws Exception
+  {
+    pool.shutdown();
+  }
+
+  public void testParallelMatchesSequentialInRecordOrder()
+  {
+    int[] sequential = new RecordSearch(pool, Integer.MAX_VALUE).find(plan, rows);
+    int[] parallel = new RecordSearch(pool, 1).find(plan, rows);
+
+    assertTrue(Arrays.equals(sequential, parallel));
+    for (int i = 1; i < parallel.length; i++)
+      assertTrue(parallel[i - 1] < parallel[i]);
+  }
+
+  public void testSearchFindsEveryMatch()
+  {
+    int[] found = new RecordSearch(pool, 1).find(plan, rows);
+
+    int expected = 0;
+    for (int i = 0; i < NO_OF_ROWS; i++)
+      if (i % 3 == 0 && i % 7 != 0)
+        expected++;
+
+    assertEquals(expected, found.length);
+  }
+
+  public void testEmptyRows()
+  {
+    assertEquals(0, new RecordSearch(pool, 0).find(plan, new ArrayList<DatabaseRow>()).length);
+  }
+
+  public void testPageIsTakenInRecordOrder()
+  {
+    int[] all = new RecordSearch(pool, Integer.MAX_VALUE).find(plan, rows);
+    List<DatabaseRow> page = new RecordSearch().findPage(plan, rows, 10, 5);
+
+    assertEquals(5, page.size());
+    for (int i = 0; i < page.size(); i++)
+      assertEquals(all[10 + i], page.get(i).getId());
+  }
+
+  public void testPageStopsScanningWhenFull()
+  {
+    final int[] looked = {0};
+    Plan<DatabaseRow> counting = new Plan<DatabaseRow>()
+    {
+      public boolean accepts(DatabaseRow databaseRow)
+      {
+        looked[0]++;
+        return plan.accepts(databaseRow);
+      }
+
+      public int getCost()
+      {
+        return plan.getCost();
+      }
+    };
+
+    new RecordSearch().findPage(counting, rows, 0, 3);
+    assertTrue(looked[0] < 20);
+  }
+
+  public void testPagePastTheEnd()
+  {
+    assertEquals(0, new RecordSearch().findPage(plan, rows, NO_OF_ROWS, 50).size());
+  }
+
+  public void testTopRowsAreSortedByColumn()
+  {
+    List<DatabaseRow> unsorted = new ArrayList<DatabaseRow>();
+    String[] names = {"delta", "Alpha", "charlie", "bravo", "alpha", "Echo"};
+    for (int i = 0; i < names.length; i++)
+      unsorted.add(new DatabaseRow(i, false, new String[]{names[i], "x"}));
+
+    Plan<DatabaseRow> everything = new Filters<DatabaseRow>(new RemoveDeletedFilter()).compile(new String[]{null, null}, SearchType.OR);
+
+    List<DatabaseRow> top = new RecordSearch().findTop(everything, unsorted, new ColumnOrder(0), 1, 3);
+    assertEquals(3, top.size());
+    assertEquals(4, top.get(0).getId());   // "Alpha" and "alpha" tie, so record order decides
+    assertEquals(3, top.get(1).getId());
+    assertEquals(2, top.get(2).getId());
+
+    assertEquals(0, new RecordSearch().findTop(everything, unsorted, new ColumnOrder(0), 0, 0).size());
+    assertEquals(6, new RecordSearch().findTop(everything, unsorted, new ColumnOrder(0), 0, Integer.MAX_VALUE).size());
+  }
+}
@@ -32,4 +32,15 @@ public class TestStartsWithFilter extends TestCase
     assertTrue(filter.accepts(new String[]{"A", "B", null}, new DatabaseRow(1, true, new String[]{"BAaaa", "Bbbb", "C"}), SearchType.OR));
     assertTrue(filter.accepts(new String[]{null, null, "Cas"}, new DatabaseRow(1, true, new String[]{"A", "B", "Casdasd"}), SearchType.OR));
   }
+
+  public void testAllCriteriaMustMatch()
+  {
+    Filter<DatabaseRow> filter = new StartsWithFilter();
+    DatabaseRow databaseRow = new DatabaseRow(1, false, new String[]{"Palace", "Smallville", "4"});
+
+    assertTrue(filter.accepts(new String[]{"pal", "SMALL", null}, databaseRow, SearchType.AND));
+    assertFalse(filter.accepts(new String[]{"pal", "big", null}, databaseRow, SearchType.AND));
+    assertFalse(filter.accepts(new String[]{"Palaces", null, null}, databaseRow, SearchType.AND));
+    assertFalse(filter.accepts(new String[]{"pal", null}, databaseRow, SearchType.AND));
+  }
 }
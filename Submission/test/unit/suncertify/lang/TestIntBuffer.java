@@ -0,0 +1,32 @@
+package suncertify.lang;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class TestIntBuffer extends TestCase
+{
+  public void testGrowsAndKeepsOrder()
+  {
+    IntBuffer buffer = new IntBuffer(1);
+    for (int i = 0; i < 100; i++)
+      buffer.add(i);
+
+    assertEquals(100, buffer.size());
+    assertEquals(42, buffer.get(42));
+    assertEquals(100, buffer.toArray().length);
+    assertEquals(99, buffer.toArray()[99]);
+  }
+
+  public void testAddAll()
+  {
+    IntBuffer first = new IntBuffer(1);
+    first.add(1);
+    IntBuffer second = new IntBuffer();
+    second.add(2);
+    second.add(3);
+
+    first.addAll(second);
+    assertTrue(Arrays.equals(new int[]{1, 2, 3}, first.toArray()));
+  }
+}
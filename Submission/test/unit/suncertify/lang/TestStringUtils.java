@@ -2,6 +2,8 @@ package suncertify.lang;
 
 import junit.framework.TestCase;
 
+import java.util.Locale;
+
 public class TestStringUtils extends TestCase
 {
   public void testPadString()
@@ -9,4 +11,19 @@ public class TestStringUtils extends TestCase
     String paddedString = StringUtils.padRight("Name", 64);
     assertEquals(64, paddedString.length());
   }
+
+  public void testFoldCaseIgnoresDefaultLocale()
+  {
+    Locale original = Locale.getDefault();
+    Locale.setDefault(new Locale("tr", "TR"));
+    try
+    {
+      assertEquals("inn", StringUtils.foldCase("INN"));
+      assertEquals(StringUtils.foldCase("Inn"), StringUtils.foldCase("iNN"));
+      assertTrue("Inn".regionMatches(true, 0, "iNN", 0, 3));
+    } finally
+    {
+      Locale.setDefault(original);
+    }
+  }
 }
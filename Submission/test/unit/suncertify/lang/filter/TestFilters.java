@@ -5,7 +5,9 @@ import suncertify.db.file.meta.DatabaseRow;
 import suncertify.db.filter.RemoveDeletedFilter;
 import suncertify.db.filter.StartsWithFilter;
 import suncertify.db.filter.SearchType;
+import suncertify.lang.filters.Filter;
 import suncertify.lang.filters.Filters;
+import suncertify.lang.filters.Plan;
 
 import java.util.Arrays;
 
@@ -21,4 +23,55 @@ public class TestFilters extends TestCase
     Filters<DatabaseRow> filters = new Filters<DatabaseRow>(new RemoveDeletedFilter(), new StartsWithFilter());
     assertEquals(1, filters.accepts(new String[]{"a", "b", "c"}, Arrays.asList(del1, del2, del3, good1), SearchType.OR).size());
   }
+
+  public void testCheapestFilterRunsFirstAndRejectsEarly()
+  {
+    CountingFilter expensive = new CountingFilter(10, true);
+    CountingFilter cheap = new CountingFilter(1, false);
+
+    Filters<DatabaseRow> filters = new Filters<DatabaseRow>(expensive, cheap);
+    DatabaseRow databaseRow = new DatabaseRow(1, false, new String[]{"A"});
+
+    assertEquals(0, filters.accepts(new String[]{"a"}, Arrays.asList(databaseRow, databaseRow), SearchType.AND).size());
+    assertEquals(2, cheap.calls);
+    assertEquals(0, expensive.calls);
+    assertEquals(1, cheap.compiled);
+  }
+
+  private static class CountingFilter implements Filter<DatabaseRow>
+  {
+    private final int cost;
+    private final boolean result;
+    private int calls = 0;
+    private int compiled = 0;
+
+    private CountingFilter(int cost, boolean result)
+    {
+      this.cost = cost;
+      this.result = result;
+    }
+
+    public boolean accepts(String[] criteria, DatabaseRow databaseRow, SearchType type)
+    {
+      return compile(criteria, type).accepts(databaseRow);
+    }
+
+    public Plan<DatabaseRow> compile(String[] criteria, SearchType type)
+    {
+      compiled++;
+      return new Plan<DatabaseRow>()
+      {
+        public boolean accepts(DatabaseRow databaseRow)
+        {
+          calls++;
+          return result;
+        }
+
+        public int getCost()
+        {
+          return cost;
+        }
+      };
+    }
+  }
 }